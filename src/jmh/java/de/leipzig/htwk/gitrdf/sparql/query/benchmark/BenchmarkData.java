@@ -0,0 +1,62 @@
+package de.leipzig.htwk.gitrdf.sparql.query.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerModel;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+
+// Serialized and parsed layers of one synthetic order, shared by the benchmarks.
+public class BenchmarkData {
+
+    private final byte[] baseRdf;
+    private final Map<ModelLayer, List<byte[]>> analysisRdf = new EnumMap<>(ModelLayer.class);
+    private final Map<ModelLayer, LayerModel> layerModels = new EnumMap<>(ModelLayer.class);
+
+    public BenchmarkData(int commits, int filesPerCommit, int analysesPerLayer) {
+        SyntheticGitRdfGenerator generator = new SyntheticGitRdfGenerator(commits, filesPerCommit, 42);
+        int commitsPerAnalysis = Math.max(1, commits / 10);
+
+        this.baseRdf = generator.generateBaseRdf();
+        analysisRdf.put(ModelLayer.RATING, generator.generateAnalysisRdf("rating", analysesPerLayer, commitsPerAnalysis));
+        analysisRdf.put(ModelLayer.STATISTIC, generator.generateAnalysisRdf("statistic", analysesPerLayer, commitsPerAnalysis));
+        analysisRdf.put(ModelLayer.EXPERT, generator.generateAnalysisRdf("expert", analysesPerLayer, commitsPerAnalysis));
+
+        layerModels.put(ModelLayer.BASE, LayerModel.inMemory(parse(baseRdf)));
+        analysisRdf.forEach((layer, documents) -> layerModels.put(layer, LayerModel.inMemory(parseAll(documents))));
+    }
+
+    public byte[] getBaseRdf() {
+        return baseRdf;
+    }
+
+    public List<byte[]> getAnalysisRdf(ModelLayer layer) {
+        return analysisRdf.get(layer);
+    }
+
+    public LayerModel getLayerModel(ModelLayer layer) {
+        return layerModels.get(layer);
+    }
+
+    public static Model parse(byte[] turtle) {
+        Model model = ModelFactory.createDefaultModel();
+        RDFParser.source(new ByteArrayInputStream(turtle)).lang(Lang.TURTLE).parse(model.getGraph());
+        return model;
+    }
+
+    public static Model parseAll(List<byte[]> documents) {
+        Model model = ModelFactory.createDefaultModel();
+        for (byte[] document : documents) {
+            RDFParser.source(new ByteArrayInputStream(document)).lang(Lang.TURTLE).parse(model.getGraph());
+        }
+        return model;
+    }
+
+}
@@ -0,0 +1,87 @@
+package de.leipzig.htwk.gitrdf.sparql.query.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+
+// Ingestion paths of a cold layer load: turtle streamed from a blob, analysis documents and rdf thrift snapshots.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int commits;
+
+    @Param({ "5" })
+    private int filesPerCommit;
+
+    @Param({ "50" })
+    private int analysesPerLayer;
+
+    private BenchmarkData data;
+    private SerialBlob baseRdfBlob;
+    private byte[] baseRdfThrift;
+
+    @Setup
+    public void setUp() throws SQLException {
+        data = new BenchmarkData(commits, filesPerCommit, analysesPerLayer);
+        baseRdfBlob = new SerialBlob(data.getBaseRdf());
+
+        ByteArrayOutputStream thrift = new ByteArrayOutputStream();
+        RDFDataMgr.write(thrift, data.getLayerModel(ModelLayer.BASE).model(), RDFFormat.RDF_THRIFT);
+        baseRdfThrift = thrift.toByteArray();
+    }
+
+    @Benchmark
+    public Model parseBaseRdfFromBlobStream() throws SQLException, IOException {
+        Model model = ModelFactory.createDefaultModel();
+
+        try (InputStream inputStream = baseRdfBlob.getBinaryStream()) {
+            RDFParser.source(inputStream).lang(Lang.TURTLE).parse(model.getGraph());
+        }
+
+        return model;
+    }
+
+    @Benchmark
+    public Model parseStatisticAnalyses() {
+        return BenchmarkData.parseAll(data.getAnalysisRdf(ModelLayer.STATISTIC));
+    }
+
+    @Benchmark
+    public Model readBaseRdfThriftSnapshot() {
+        Model model = ModelFactory.createDefaultModel();
+        RDFParser.source(new ByteArrayInputStream(baseRdfThrift)).lang(Lang.RDFTHRIFT).parse(model.getGraph());
+        return model;
+    }
+
+}
@@ -0,0 +1,141 @@
+package de.leipzig.htwk.gitrdf.sparql.query.benchmark;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ParsedQuery;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryView;
+
+// Representative SELECT and ASK queries on the view of every QueryType, with and without json serialization.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueryBenchmark {
+
+    private static final String PREFIXES = """
+            PREFIX git: <git://>
+            PREFIX analysis: <git://analysis/>
+            """;
+
+    private static final ParsedQuery COMMITS_PER_AUTHOR = ParsedQuery.parse(PREFIXES + """
+            SELECT ?author (COUNT(?commit) AS ?commits) WHERE {
+                ?commit git:AuthorName ?author .
+            } GROUP BY ?author ORDER BY DESC(?commits)
+            """);
+
+    private static final ParsedQuery COMMIT_LOOKUP = ParsedQuery.parse(PREFIXES + """
+            SELECT ?commit ?message WHERE {
+                ?commit git:AuthorName "emmanuel" ;
+                        git:Message ?message .
+            } LIMIT 100
+            """);
+
+    private static final ParsedQuery AVERAGE_PER_METRIC = ParsedQuery.parse(PREFIXES + """
+            SELECT ?metric (AVG(?value) AS ?average) WHERE {
+                ?measurement analysis:metric ?metric ;
+                             analysis:value ?value .
+            } GROUP BY ?metric
+            """);
+
+    private static final ParsedQuery RATED_COMMITS = ParsedQuery.parse(PREFIXES + """
+            SELECT ?commit ?author ?value WHERE {
+                ?measurement analysis:subject ?commit ;
+                             analysis:value ?value .
+                ?commit git:AuthorName ?author .
+                FILTER(?value > 4.0)
+            }
+            """);
+
+    private static final ParsedQuery AUTHOR_EXISTS = ParsedQuery.parse(PREFIXES + """
+            ASK { ?commit git:AuthorName "grace" }
+            """);
+
+    private static final ParsedQuery MEASUREMENT_EXISTS = ParsedQuery.parse(PREFIXES + """
+            ASK { ?measurement analysis:value ?value FILTER(?value >= 4.9) }
+            """);
+
+    private static final OutputStream DISCARD = OutputStream.nullOutputStream();
+
+    @Param({ "BASIC", "COMBINED", "ANALYSIS", "EXPERT", "ALL" })
+    private QueryType queryType;
+
+    @Param({ "10000" })
+    private int commits;
+
+    private QueryView queryView;
+    private ParsedQuery selectQuery;
+    private ParsedQuery askQuery;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(commits, 5, 50);
+
+        queryView = QueryView.of(0, queryType, queryType.getLayers().stream().map(data::getLayerModel).toList());
+
+        boolean hasBase = queryType.getLayers().contains(ModelLayer.BASE);
+        boolean hasAnalyses = queryType.getLayers().stream().anyMatch(ModelLayer::isAnalysisLayer);
+
+        selectQuery = hasBase && hasAnalyses ? RATED_COMMITS : hasBase ? COMMITS_PER_AUTHOR : AVERAGE_PER_METRIC;
+        askQuery = hasBase ? AUTHOR_EXISTS : MEASUREMENT_EXISTS;
+    }
+
+    @Benchmark
+    public void select(Blackhole blackhole) {
+        try (QueryExecution queryExecution = selectQuery.createExecution(queryView.getModel())) {
+            ResultSet resultSet = queryExecution.execSelect();
+            while (resultSet.hasNext()) {
+                blackhole.consume(resultSet.nextBinding());
+            }
+        }
+    }
+
+    @Benchmark
+    public void selectPointLookup(Blackhole blackhole) {
+        if (!queryType.getLayers().contains(ModelLayer.BASE)) {
+            return;
+        }
+
+        try (QueryExecution queryExecution = COMMIT_LOOKUP.createExecution(queryView.getModel())) {
+            ResultSet resultSet = queryExecution.execSelect();
+            while (resultSet.hasNext()) {
+                blackhole.consume(resultSet.nextBinding());
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean ask() {
+        try (QueryExecution queryExecution = askQuery.createExecution(queryView.getModel())) {
+            return queryExecution.execAsk();
+        }
+    }
+
+    @Benchmark
+    public void selectAsJson() {
+        try (QueryExecution queryExecution = selectQuery.createExecution(queryView.getModel())) {
+            ResultSetFormatter.outputAsJSON(DISCARD, queryExecution.execSelect());
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package de.leipzig.htwk.gitrdf.sparql.query.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Produces turtle shaped like the output of the git to rdf conversion: commits with author, date, message
+// and changed files as base rdf, plus one small rdf document per analysis entry.
+public class SyntheticGitRdfGenerator {
+
+    private static final String PREFIXES = """
+            @prefix git: <git://> .
+            @prefix analysis: <git://analysis/> .
+            @prefix xsd: <http://www.w3.org/2001/XMLSchema#> .
+
+            """;
+
+    private static final String[] AUTHORS = { "emmanuel", "ada", "linus", "grace", "ken", "barbara", "dennis", "margaret" };
+
+    private final int commitCount;
+    private final int filesPerCommit;
+    private final Random random;
+
+    public SyntheticGitRdfGenerator(int commitCount, int filesPerCommit, long seed) {
+        this.commitCount = commitCount;
+        this.filesPerCommit = filesPerCommit;
+        this.random = new Random(seed);
+    }
+
+    public byte[] generateBaseRdf() {
+        StringBuilder turtle = new StringBuilder(PREFIXES);
+
+        for (int commit = 0; commit < commitCount; commit++) {
+            String author = AUTHORS[random.nextInt(AUTHORS.length)];
+
+            turtle.append("<").append(commitUri(commit)).append(">\n")
+                    .append("    git:CommitHash \"").append(hash(commit)).append("\" ;\n")
+                    .append("    git:AuthorName \"").append(author).append("\" ;\n")
+                    .append("    git:AuthorEmail \"").append(author).append("@example.org\" ;\n")
+                    .append("    git:CommitDate \"2024-01-").append(String.format("%02d", commit % 28 + 1))
+                    .append("T12:00:00\"^^xsd:dateTime ;\n")
+                    .append("    git:Message \"Commit number ").append(commit).append(" changing some files\" ;\n");
+
+            if (commit > 0) {
+                turtle.append("    git:ParentCommit <").append(commitUri(commit - 1)).append("> ;\n");
+            }
+
+            for (int file = 0; file < filesPerCommit; file++) {
+                turtle.append("    git:FileChange [\n")
+                        .append("        git:FileName \"src/module").append(random.nextInt(50))
+                        .append("/File").append(random.nextInt(500)).append(".java\" ;\n")
+                        .append("        git:LinesAdded ").append(random.nextInt(200)).append(" ;\n")
+                        .append("        git:LinesDeleted ").append(random.nextInt(100)).append("\n")
+                        .append("    ] ;\n");
+            }
+
+            turtle.append("    a git:Commit .\n\n");
+        }
+
+        return turtle.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // One document per analysis entry, each rating or measuring a subset of the commits.
+    public List<byte[]> generateAnalysisRdf(String metric, int analysisCount, int commitsPerAnalysis) {
+        List<byte[]> analyses = new ArrayList<>(analysisCount);
+
+        for (int analysis = 0; analysis < analysisCount; analysis++) {
+            StringBuilder turtle = new StringBuilder(PREFIXES);
+
+            for (int i = 0; i < commitsPerAnalysis; i++) {
+                int commit = random.nextInt(commitCount);
+
+                turtle.append("<git://analysis/").append(metric).append("/").append(analysis).append("/").append(i).append(">\n")
+                        .append("    analysis:metric \"").append(metric).append("\" ;\n")
+                        .append("    analysis:subject <").append(commitUri(commit)).append("> ;\n")
+                        .append("    analysis:value \"").append(random.nextInt(50) / 10.0).append("\"^^xsd:decimal .\n\n");
+            }
+
+            analyses.add(turtle.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        return analyses;
+    }
+
+    private String commitUri(int commit) {
+        return "https://github.com/example/repository/commit/" + hash(commit);
+    }
+
+    private String hash(int commit) {
+        return String.format("%040x", (long) commit * 2654435761L);
+    }
+
+}
@@ -0,0 +1,94 @@
+package de.leipzig.htwk.gitrdf.sparql.query.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerModel;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ParsedQuery;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryView;
+
+// Nested ModelFactory.createUnion views against the same layers copied into one materialized graph.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UnionBenchmark {
+
+    private static final ParsedQuery JOIN_QUERY = ParsedQuery.parse("""
+            PREFIX git: <git://>
+            PREFIX analysis: <git://analysis/>
+            SELECT ?author (AVG(?value) AS ?average) WHERE {
+                ?commit git:AuthorName ?author .
+                ?measurement analysis:subject ?commit ;
+                             analysis:value ?value .
+            } GROUP BY ?author
+            """);
+
+    @Param({ "10000" })
+    private int commits;
+
+    private List<LayerModel> layerModels;
+    private Model nestedUnion;
+    private Model materialized;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(commits, 5, 50);
+
+        layerModels = QueryType.ALL.getLayers().stream().map(data::getLayerModel).toList();
+        nestedUnion = buildNestedUnion();
+        materialized = buildMaterialized();
+    }
+
+    @Benchmark
+    public Model buildNestedUnion() {
+        return QueryView.of(0, QueryType.ALL, layerModels).getModel();
+    }
+
+    @Benchmark
+    public Model buildMaterialized() {
+        Model model = ModelFactory.createDefaultModel();
+        layerModels.forEach(layerModel -> model.add(layerModel.model()));
+        return model;
+    }
+
+    @Benchmark
+    public void queryNestedUnion(Blackhole blackhole) {
+        consume(nestedUnion, blackhole);
+    }
+
+    @Benchmark
+    public void queryMaterialized(Blackhole blackhole) {
+        consume(materialized, blackhole);
+    }
+
+    private void consume(Model model, Blackhole blackhole) {
+        try (QueryExecution queryExecution = JOIN_QUERY.createExecution(model)) {
+            ResultSet resultSet = queryExecution.execSelect();
+            while (resultSet.hasNext()) {
+                blackhole.consume(resultSet.nextBinding());
+            }
+        }
+    }
+
+}
@@ -2,10 +2,15 @@ package de.leipzig.htwk.gitrdf.sparql.query.api.advice;
 
 import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
 import de.leipzig.htwk.gitrdf.sparql.query.api.exception.NotFoundException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.QueryTimeoutException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.TooManyRequestsException;
 import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.BadRequestErrorResponse;
 import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.InternalServerErrorResponse;
 import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.NotFoundErrorResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.QueryTimeoutErrorResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.TooManyRequestsErrorResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -40,6 +45,30 @@ public class GeneralControllerAdvice {
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(value = QueryTimeoutException.class)
+    public ResponseEntity<QueryTimeoutErrorResponse> handleQueryTimeoutException(QueryTimeoutException ex) {
+
+        log.info("Query timeout exception during request handling. {}", ex.getMessage());
+
+        QueryTimeoutErrorResponse response
+                = new QueryTimeoutErrorResponse(ex.getStatus(), ex.getReason(), ex.getSolution());
+
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(value = TooManyRequestsException.class)
+    public ResponseEntity<TooManyRequestsErrorResponse> handleTooManyRequestsException(TooManyRequestsException ex) {
+
+        log.info("Too many requests exception during request handling. {}", ex.getMessage());
+
+        TooManyRequestsErrorResponse response
+                = new TooManyRequestsErrorResponse(ex.getStatus(), ex.getReason(), ex.getSolution());
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter().toSeconds()))
+                .body(response);
+    }
+
     @ExceptionHandler(value = IOException.class)
     public ResponseEntity<InternalServerErrorResponse> handleIOException(IOException ex) {
 
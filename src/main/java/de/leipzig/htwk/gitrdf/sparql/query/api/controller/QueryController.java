@@ -1,12 +1,20 @@
 package de.leipzig.htwk.gitrdf.sparql.query.api.controller;
 
 import de.leipzig.htwk.gitrdf.sparql.query.api.documentation.GeneralInternalServerErrorApiResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.api.documentation.QueryTimeoutApiResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.api.documentation.TooManyRequestsApiResponse;
 import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
 import de.leipzig.htwk.gitrdf.sparql.query.api.model.request.QueryRequest;
 import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.BadRequestErrorResponse;
 import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.NotFoundErrorResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ResultFormat;
 import de.leipzig.htwk.gitrdf.sparql.query.service.impl.SparqlQueryServiceImpl;
 import de.leipzig.htwk.gitrdf.sparql.query.utils.LongUtils;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.PageSizeUtils;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.QueryTypeUtils;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.TimeoutUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -16,16 +24,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
@@ -37,14 +45,17 @@ public class QueryController {
     // for more infos regarding a SPARQL conform api: https://www.w3.org/TR/sparql11-protocol/
     // https://www.w3.org/2001/sw/DataAccess/rq23/#ask
 
+    // set on a page of a cursor if another page follows, its value is the id to fetch that page with
+    private static final String CURSOR_HEADER = "Query-Cursor";
+
     private final SparqlQueryServiceImpl sparqlQueryService;
 
     @Operation(
             summary = "Perform a SPARQL-Query on repository RDF data + statistics (excludes ratings for performance)",
-            description = "Provide the query as a query parameter named 'query'. This endpoint loads the base Git repository RDF and statistics data, but excludes ratings to avoid timeouts.")
+            description = "Provide the query as a query parameter named 'query'. This endpoint loads the base Git repository RDF and statistics data, but excludes ratings to avoid timeouts. Optionally provide a 'pageSize' to page through the result of a SELECT query with a cursor.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"commit\" ]} ,\"results\": {\"bindings\": [{\"commit\": { \"type\": \"uri\" , \"value\": \"https://github.com/dotnet/core/commit/b0ec7806d47408656cb17230f8875cc9413064e0\"}}]}}")))
@@ -78,21 +89,36 @@ public class QueryController {
                                     name = "No github to rdf entry found",
                                     description = "No github to rdf entry found",
                                     value = "{\"status\": \"Not found\", \"reason\": \"No github to rdf entry found for id '3'\", \"solution\": \"Provide an id for an existing github to rdf entry\"}")}))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
-    @GetMapping(value = "/rdf/query/{id}", produces = "application/sparql-results+json")
-    public @ResponseBody Resource getResultOfGetQuery(
+    @GetMapping(
+            value = "/rdf/query/{id}",
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getResultOfGetQuery(
             @PathVariable("id") String id,
-            @RequestParam("query") String query) throws SQLException, IOException {
+            @RequestParam("query") String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestParam(value = "pageSize", required = false) String pageSize,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getQueryJsonResultResponseFrom(id, query);
+        return getQueryResultResponseFrom(id, query, timeout, pageSize, accept);
     }
 
     @Operation(
             summary = "Perform a SPARQL-Query on repository RDF data + statistics (excludes ratings for performance)",
-            description = "Provide the query url encoded in the request body as 'query' field. This endpoint loads the base Git repository RDF and statistics data, but excludes ratings to avoid timeouts.")
+            description = "Provide the query url encoded in the request body as 'query' field. This endpoint loads the base Git repository RDF and statistics data, but excludes ratings to avoid timeouts. Optionally provide a 'pageSize' to page through the result of a SELECT query with a cursor.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"commit\" ]} ,\"results\": {\"bindings\": [{\"commit\": { \"type\": \"uri\" , \"value\": \"https://github.com/dotnet/core/commit/b0ec7806d47408656cb17230f8875cc9413064e0\"}}]}}")))
@@ -126,24 +152,36 @@ public class QueryController {
                                     name = "No github to rdf entry found",
                                     description = "No github to rdf entry found",
                                     value = "{\"status\": \"Not found\", \"reason\": \"No github to rdf entry found for id '3'\", \"solution\": \"Provide an id for an existing github to rdf entry\"}")}))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
     @PostMapping(
             value = "/rdf/query/encoded/{id}",
             consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE,
-            produces = "application/sparql-results+json")
-    public @ResponseBody Resource getResultOfPostQueryFormEncoded(
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getResultOfPostQueryFormEncoded(
             @PathVariable("id") String id,
-            QueryRequest queryRequest) throws SQLException, IOException {
+            QueryRequest queryRequest,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getQueryJsonResultResponseFrom(id, queryRequest.getQuery());
+        return getQueryResultResponseFrom(
+                id, queryRequest.getQuery(), queryRequest.getTimeout(), queryRequest.getPageSize(), accept);
     }
 
     @Operation(
             summary = "Perform a SPARQL-Query on repository RDF data + statistics (excludes ratings for performance)",
-            description = "Provide the query directly in the body. This endpoint loads the base Git repository RDF and statistics data, but excludes ratings to avoid timeouts.")
+            description = "Provide the query directly in the body. This endpoint loads the base Git repository RDF and statistics data, but excludes ratings to avoid timeouts. Optionally provide a 'pageSize' to page through the result of a SELECT query with a cursor.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"commit\" ]} ,\"results\": {\"bindings\": [{\"commit\": { \"type\": \"uri\" , \"value\": \"https://github.com/dotnet/core/commit/b0ec7806d47408656cb17230f8875cc9413064e0\"}}]}}")))
@@ -177,16 +215,29 @@ public class QueryController {
                                     name = "No github to rdf entry found",
                                     description = "No github to rdf entry found",
                                     value = "{\"status\": \"Not found\", \"reason\": \"No github to rdf entry found for id '3'\", \"solution\": \"Provide an id for an existing github to rdf entry\"}")}))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
     @PostMapping(
             value = "/rdf/query/{id}",
             consumes = "application/sparql-query",
-            produces = "application/sparql-results+json")
-    public @ResponseBody Resource getResultOfPostQueryDirectRequest(
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getResultOfPostQueryDirectRequest(
             @PathVariable("id") String id,
-            @RequestBody String query) throws SQLException, IOException {
+            @RequestBody String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestParam(value = "pageSize", required = false) String pageSize,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getQueryJsonResultResponseFrom(id, query);
+        return getQueryResultResponseFrom(id, query, timeout, pageSize, accept);
     }
 
     @Operation(
@@ -194,7 +245,7 @@ public class QueryController {
             description = "Provide the query as a query parameter named 'query'. This endpoint loads repository RDF plus all ratings and statistics data. Use with caution for repositories with many ratings as it may timeout.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"commit\", \"rating\" ]} ,\"results\": {\"bindings\": [{\"commit\": { \"type\": \"uri\" , \"value\": \"https://github.com/dotnet/core/commit/b0ec7806d47408656cb17230f8875cc9413064e0\"}, \"rating\": {\"type\": \"literal\", \"value\": \"4.5\"}}]}}")))
@@ -210,13 +261,27 @@ public class QueryController {
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                     schema = @Schema(implementation = NotFoundErrorResponse.class)))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
-    @GetMapping(value = "/rdf/query-combined/{id}", produces = "application/sparql-results+json")
-    public @ResponseBody Resource getCombinedQueryResult(
+    @GetMapping(
+            value = "/rdf/query-combined/{id}",
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getCombinedQueryResult(
             @PathVariable("id") String id,
-            @RequestParam("query") String query) throws SQLException, IOException {
+            @RequestParam("query") String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getCombinedQueryJsonResultResponseFrom(id, query);
+        return getCombinedQueryResultResponseFrom(id, query, timeout, accept);
     }
 
     @Operation(
@@ -224,7 +289,7 @@ public class QueryController {
             description = "Provide the query as a query parameter named 'query'. This endpoint only loads ratings and statistics RDF data, excluding the base repository data.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"rating\" ]} ,\"results\": {\"bindings\": [{\"rating\": { \"type\": \"literal\" , \"value\": \"4.5\"}}]}}")))
@@ -240,13 +305,27 @@ public class QueryController {
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                     schema = @Schema(implementation = NotFoundErrorResponse.class)))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
-    @GetMapping(value = "/rdf/query-analysis/{id}", produces = "application/sparql-results+json")
-    public @ResponseBody Resource getAnalysisQueryResult(
+    @GetMapping(
+            value = "/rdf/query-analysis/{id}",
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getAnalysisQueryResult(
             @PathVariable("id") String id,
-            @RequestParam("query") String query) throws SQLException, IOException {
+            @RequestParam("query") String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getAnalysisDataQueryJsonResultResponseFrom(id, query);
+        return getAnalysisDataQueryResultResponseFrom(id, query, timeout, accept);
     }
 
     @Operation(
@@ -254,7 +333,7 @@ public class QueryController {
             description = "Provide the query directly in the body. This endpoint loads the base Git repository RDF and expert analysis data.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"commit\", \"expert\" ]} ,\"results\": {\"bindings\": [{\"commit\": { \"type\": \"uri\" , \"value\": \"https://github.com/dotnet/core/commit/b0ec7806d47408656cb17230f8875cc9413064e0\"}, \"expert\": {\"type\": \"literal\", \"value\": \"expert analysis data\"}}]}}")))
@@ -270,16 +349,28 @@ public class QueryController {
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                     schema = @Schema(implementation = NotFoundErrorResponse.class)))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
     @PostMapping(
             value = "/rdf/query-expert/{id}",
             consumes = "application/sparql-query",
-            produces = "application/sparql-results+json")
-    public @ResponseBody Resource getExpertQueryResult(
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getExpertQueryResult(
             @PathVariable("id") String id,
-            @RequestBody String query) throws SQLException, IOException {
+            @RequestBody String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getExpertDataQueryJsonResultResponseFrom(id, query);
+        return getExpertDataQueryResultResponseFrom(id, query, timeout, accept);
     }
 
     @Operation(
@@ -287,7 +378,7 @@ public class QueryController {
             description = "Provide the query directly in the body. This endpoint loads all available RDF data including repository, ratings, statistics, and expert analysis data.")
     @ApiResponse(
             responseCode = "200",
-            description = "SPARQL-Query result in json",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
             content = @Content(
                     mediaType = "application/sparql-results+json",
                     schema = @Schema(example = "{\"head\": {\"vars\": [ \"commit\", \"rating\", \"expert\" ]} ,\"results\": {\"bindings\": [{\"commit\": { \"type\": \"uri\" , \"value\": \"https://github.com/dotnet/core/commit/b0ec7806d47408656cb17230f8875cc9413064e0\"}, \"rating\": {\"type\": \"literal\", \"value\": \"4.5\"}, \"expert\": {\"type\": \"literal\", \"value\": \"expert analysis data\"}}]}}")))
@@ -303,71 +394,198 @@ public class QueryController {
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                     schema = @Schema(implementation = NotFoundErrorResponse.class)))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
     @GeneralInternalServerErrorApiResponse
     @PostMapping(
             value = "/rdf/query-all/{id}",
             consumes = "application/sparql-query",
-            produces = "application/sparql-results+json")
-    public @ResponseBody Resource getAllQueryResult(
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getAllQueryResult(
             @PathVariable("id") String id,
-            @RequestBody String query) throws SQLException, IOException {
+            @RequestBody String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
 
-        return getAllDataQueryJsonResultResponseFrom(id, query);
+        return getAllDataQueryResultResponseFrom(id, query, timeout, accept);
     }
 
-    private Resource getQueryJsonResultResponseFrom(String entityId, String query) throws SQLException, IOException {
+    @Operation(
+            summary = "Perform a SPARQL-Query across several repositories",
+            description = "Provide the query directly in the body and a comma separated list of ids. The data of every id is the named graph 'urn:gitrdf:order:{id}', the default graph is the union of all of them. 'queryType' selects the data loaded per id like the single id endpoints: BASIC (default), COMBINED, ANALYSIS, EXPERT or ALL.")
+    @ApiResponse(
+            responseCode = "200",
+            description = "SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted. Results of CONSTRUCT and DESCRIBE queries in turtle, n-triples or rdf thrift",
+            content = @Content(
+                    mediaType = "application/sparql-results+json",
+                    schema = @Schema(example = "{\"head\": {\"vars\": [ \"repository\", \"commits\" ]} ,\"results\": {\"bindings\": [{\"repository\": { \"type\": \"uri\" , \"value\": \"urn:gitrdf:order:55\"}, \"commits\": {\"type\": \"literal\", \"datatype\": \"http://www.w3.org/2001/XMLSchema#integer\", \"value\": \"1234\"}}]}}")))
+    @ApiResponse(
+            responseCode = "400",
+            description = "Bad Request",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = BadRequestErrorResponse.class)))
+    @ApiResponse(
+            responseCode = "404",
+            description = "Not found",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = NotFoundErrorResponse.class)))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
+    @GeneralInternalServerErrorApiResponse
+    @PostMapping(
+            value = "/rdf/query-multi",
+            consumes = "application/sparql-query",
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE,
+                    ResultFormat.TURTLE_MEDIA_TYPE,
+                    ResultFormat.N_TRIPLES_MEDIA_TYPE,
+                    ResultFormat.RDF_THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getMultiOrderQueryResult(
+            @RequestParam("ids") String ids,
+            @RequestParam(value = "queryType", required = false) String queryType,
+            @RequestBody String query,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
+
+        List<Long> longIds = LongUtils.convertStringToLongIdsOrThrowException(ids);
+
+        QueryType convertedQueryType = QueryTypeUtils.convertStringToQueryTypeOrThrowException(queryType);
+
+        throwExceptionOnEmptyQueryString(query);
+
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
+
+        return toResponseEntity(sparqlQueryService.performSparqlQueryOnOrders(longIds, convertedQueryType, query, timeoutDuration, accept));
+    }
+
+    @Operation(
+            summary = "Fetch the next page of a SPARQL-Query result",
+            description = "Queries on /rdf/query/{id} with a 'pageSize' return the first page of their result. If further pages follow, the id of a cursor is returned in the 'Query-Cursor' header. Fetch the next page with that id, the query is not evaluated again. The header is missing on the last page. Open cursors are closed after a short time without fetching.")
+    @ApiResponse(
+            responseCode = "200",
+            description = "Next page of the SPARQL-Query result, in json unless xml, csv, tsv or thrift is accepted")
+    @ApiResponse(
+            responseCode = "404",
+            description = "Not found",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = NotFoundErrorResponse.class),
+                    examples = {
+                            @ExampleObject(
+                                    name = "No open cursor found",
+                                    description = "No open cursor found",
+                                    value = "{\"status\": \"Not found\", \"reason\": \"No open cursor found for id '1c4e8f6a-3b1d-4f7e-9a2c-5d6b7e8f9a0b'\", \"solution\": \"The cursor was fully read or expired. Run the query again to open a new cursor\"}")}))
+    @TooManyRequestsApiResponse
+    @QueryTimeoutApiResponse
+    @GeneralInternalServerErrorApiResponse
+    @GetMapping(
+            value = "/rdf/cursor/{cursorId}",
+            produces = {
+                    ResultFormat.JSON_MEDIA_TYPE,
+                    ResultFormat.XML_MEDIA_TYPE,
+                    ResultFormat.CSV_MEDIA_TYPE,
+                    ResultFormat.TSV_MEDIA_TYPE,
+                    ResultFormat.THRIFT_MEDIA_TYPE })
+    public ResponseEntity<StreamingResponseBody> getNextCursorPage(
+            @PathVariable("cursorId") String cursorId,
+            @RequestParam(value = "timeout", required = false) String timeout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws SQLException, IOException {
+
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
+
+        return toResponseEntity(sparqlQueryService.fetchCursorPage(cursorId, timeoutDuration, accept));
+    }
+
+    private ResponseEntity<StreamingResponseBody> getQueryResultResponseFrom(String entityId, String query, String timeout,
+            String pageSize, String accept) throws SQLException, IOException {
 
         long longId = LongUtils.convertStringToLongIdOrThrowException(entityId);
 
         throwExceptionOnEmptyQueryString(query);
 
-        File tempRdfQueryResultJsonFile = sparqlQueryService.performSparqlQuery(longId, query);
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
+
+        Integer intPageSize = PageSizeUtils.convertStringToPageSizeOrThrowException(pageSize);
+
+        if (intPageSize != null) {
+            return toResponseEntity(sparqlQueryService.performSparqlQueryWithCursor(longId, query, timeoutDuration, accept, intPageSize));
+        }
 
-        return new InputStreamResource(new BufferedInputStream(new FileInputStream(tempRdfQueryResultJsonFile)));
+        return toResponseEntity(sparqlQueryService.performSparqlQuery(longId, query, timeoutDuration, accept));
     }
 
-    private Resource getCombinedQueryJsonResultResponseFrom(String entityId, String query) throws SQLException, IOException {
+    private ResponseEntity<StreamingResponseBody> getCombinedQueryResultResponseFrom(String entityId, String query, String timeout,
+            String accept) throws SQLException, IOException {
 
         long longId = LongUtils.convertStringToLongIdOrThrowException(entityId);
 
         throwExceptionOnEmptyQueryString(query);
 
-        File tempRdfQueryResultJsonFile = sparqlQueryService.performSparqlQueryCombined(longId, query);
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
 
-        return new InputStreamResource(new BufferedInputStream(new FileInputStream(tempRdfQueryResultJsonFile)));
+        return toResponseEntity(sparqlQueryService.performSparqlQueryCombined(longId, query, timeoutDuration, accept));
     }
 
-    private Resource getAnalysisDataQueryJsonResultResponseFrom(String entityId, String query) throws SQLException, IOException {
+    private ResponseEntity<StreamingResponseBody> getAnalysisDataQueryResultResponseFrom(String entityId, String query, String timeout,
+            String accept) throws SQLException, IOException {
 
         long longId = LongUtils.convertStringToLongIdOrThrowException(entityId);
 
         throwExceptionOnEmptyQueryString(query);
 
-        File tempRdfQueryResultJsonFile = sparqlQueryService.performSparqlQueryAnalysisData(longId, query);
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
 
-        return new InputStreamResource(new BufferedInputStream(new FileInputStream(tempRdfQueryResultJsonFile)));
+        return toResponseEntity(sparqlQueryService.performSparqlQueryAnalysisData(longId, query, timeoutDuration, accept));
     }
 
-    private Resource getExpertDataQueryJsonResultResponseFrom(String entityId, String query) throws SQLException, IOException {
+    private ResponseEntity<StreamingResponseBody> getExpertDataQueryResultResponseFrom(String entityId, String query, String timeout,
+            String accept) throws SQLException, IOException {
 
         long longId = LongUtils.convertStringToLongIdOrThrowException(entityId);
 
         throwExceptionOnEmptyQueryString(query);
 
-        File tempRdfQueryResultJsonFile = sparqlQueryService.performSparqlQueryExpertData(longId, query);
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
 
-        return new InputStreamResource(new BufferedInputStream(new FileInputStream(tempRdfQueryResultJsonFile)));
+        return toResponseEntity(sparqlQueryService.performSparqlQueryExpertData(longId, query, timeoutDuration, accept));
     }
 
-    private Resource getAllDataQueryJsonResultResponseFrom(String entityId, String query) throws SQLException, IOException {
+    private ResponseEntity<StreamingResponseBody> getAllDataQueryResultResponseFrom(String entityId, String query, String timeout,
+            String accept) throws SQLException, IOException {
 
         long longId = LongUtils.convertStringToLongIdOrThrowException(entityId);
 
         throwExceptionOnEmptyQueryString(query);
 
-        File tempRdfQueryResultJsonFile = sparqlQueryService.performSparqlQueryAllData(longId, query);
+        Duration timeoutDuration = TimeoutUtils.convertSecondsToTimeoutOrThrowException(timeout);
+
+        return toResponseEntity(sparqlQueryService.performSparqlQueryAllData(longId, query, timeoutDuration, accept));
+    }
+
+    private ResponseEntity<StreamingResponseBody> toResponseEntity(QueryResponse queryResponse) {
+
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok()
+                .contentType(queryResponse.resultFormat().getMediaType());
+
+        if (queryResponse.nextCursorId() != null) {
+            responseBuilder.header(CURSOR_HEADER, queryResponse.nextCursorId());
+        }
 
-        return new InputStreamResource(new BufferedInputStream(new FileInputStream(tempRdfQueryResultJsonFile)));
+        return responseBuilder.body(queryResponse.body());
     }
 
     private void throwExceptionOnEmptyQueryString(String query) {
@@ -0,0 +1,25 @@
+package de.leipzig.htwk.gitrdf.sparql.query.api.documentation;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.QueryTimeoutErrorResponse;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.MediaType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ApiResponse(
+        responseCode = "503",
+        description = "Query timed out",
+        content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = QueryTimeoutErrorResponse.class),
+                examples = @ExampleObject("{\"status\": \"Service Unavailable\", \"reason\": \"The SPARQL-Query on the github to rdf entry with the id '3' did not finish within 60 seconds\", \"solution\": \"Narrow the query down, for example with a LIMIT or more selective patterns, or request a higher timeout with the 'timeout' parameter\"}")))
+public @interface QueryTimeoutApiResponse {
+}
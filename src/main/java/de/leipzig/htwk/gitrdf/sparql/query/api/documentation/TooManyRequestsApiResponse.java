@@ -0,0 +1,28 @@
+package de.leipzig.htwk.gitrdf.sparql.query.api.documentation;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.response.error.TooManyRequestsErrorResponse;
+import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ApiResponse(
+        responseCode = "429",
+        description = "Too many queries are running or queued",
+        headers = @Header(name = HttpHeaders.RETRY_AFTER, description = "Seconds to wait before retrying the query"),
+        content = @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = TooManyRequestsErrorResponse.class),
+                examples = @ExampleObject("{\"status\": \"Too Many Requests\", \"reason\": \"Too many SPARQL-Queries are currently running or waiting to be executed\", \"solution\": \"Retry the query in 5 seconds\"}")))
+public @interface TooManyRequestsApiResponse {
+}
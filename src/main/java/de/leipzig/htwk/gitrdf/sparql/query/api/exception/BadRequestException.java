@@ -1,5 +1,12 @@
 package de.leipzig.htwk.gitrdf.sparql.query.api.exception;
 
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ResultFormat;
 import lombok.Getter;
 
 @Getter
@@ -38,6 +45,131 @@ public class BadRequestException extends RuntimeException {
         return new BadRequestException(message, status, reason, solution);
     }
 
+    public static BadRequestException emptyIdList() {
+
+        String status = "Bad Request";
+        String reason = "No ids were given";
+        String solution = "Provide a comma separated list of ids. Example ids: 55,56,57";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException tooManyIds(int idCount, int maxIds) {
+
+        String status = "Bad Request";
+        String reason = String.format("%d ids were given, but a query can span at most %d orders", idCount, maxIds);
+        String solution = String.format("Provide at most %d ids or split the query into several requests", maxIds);
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException invalidQueryType(String queryTypeString) {
+
+        String status = "Bad Request";
+        String reason = String.format("Invalid query type '%s' was given", queryTypeString);
+        String solution = String.format("Provide one of the query types %s", Arrays.toString(QueryType.values()));
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException queryTooExpensive(List<String> findings, long estimatedCost, long maxCost) {
+
+        String status = "Bad Request";
+        String reason = String.format("The SPARQL-Query is estimated to produce about %d intermediate solutions, more than the allowed %d",
+                estimatedCost, maxCost) + findingsOf(findings);
+        String solution = "Connect all patterns through shared variables, bind one end of '*' and '+' property paths to an IRI or a variable of another pattern, or narrow the query down with more selective patterns";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException queryResultTooLarge(List<String> findings, long estimatedResults, long maxResults) {
+
+        String status = "Bad Request";
+        String reason = String.format("The SPARQL-Query has no LIMIT and is estimated to return about %d solutions, more than the allowed %d",
+                estimatedResults, maxResults) + findingsOf(findings);
+        String solution = "Add a LIMIT to the query or page through the result with the 'pageSize' parameter";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException invalidTimeout(String timeoutString) {
+
+        String status = "Bad Request";
+        String reason = String.format("Invalid timeout '%s' was given", timeoutString);
+        String solution = "Provide the timeout as a positive number of seconds. Example timeout: 30";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException askResultFormatNotSupported(ResultFormat resultFormat) {
+
+        String status = "Bad Request";
+        String reason = String.format("The result of an ASK query can't be returned as '%s'", resultFormat.getMediaType());
+        String solution = String.format("Accept '%s', '%s', '%s' or '%s' for ASK queries",
+                ResultFormat.JSON_MEDIA_TYPE, ResultFormat.XML_MEDIA_TYPE, ResultFormat.CSV_MEDIA_TYPE, ResultFormat.TSV_MEDIA_TYPE);
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException invalidPageSize(String pageSizeString) {
+
+        String status = "Bad Request";
+        String reason = String.format("Invalid page size '%s' was given", pageSizeString);
+        String solution = "Provide the page size as a positive number of solutions. Example page size: 1000";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException pageSizeTooLarge(int pageSize, int maxPageSize) {
+
+        String status = "Bad Request";
+        String reason = String.format("The page size %d exceeds the maximum page size of %d", pageSize, maxPageSize);
+        String solution = String.format("Provide a page size of at most %d", maxPageSize);
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException cursorRequiresSelectQuery() {
+
+        String status = "Bad Request";
+        String reason = "Only the results of SELECT queries can be paged with a cursor";
+        String solution = "Provide a SELECT query or leave out the page size";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
+    public static BadRequestException cursorResultTooLarge(DataSize maxSpillSize) {
+
+        String status = "Bad Request";
+        String reason = String.format("The result of the query exceeds the %d MB a cursor on this order can hold",
+                maxSpillSize.toMegabytes());
+        String solution = "Narrow down the query or page through its result with LIMIT and OFFSET";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new BadRequestException(message, status, reason, solution);
+    }
+
     private final String status;
     private final String reason;
     private final String solution;
@@ -50,6 +182,10 @@ public class BadRequestException extends RuntimeException {
         this.solution = solution;
     }
 
+    private static String findingsOf(List<String> findings) {
+        return findings.isEmpty() ? "" : ". " + String.join(". ", findings);
+    }
+
     private static String getMessageFrom(String status, String reason, String solution) {
         return String.format("Status: %s, Reason: %s, Solution: %s", status, reason, solution);
     }
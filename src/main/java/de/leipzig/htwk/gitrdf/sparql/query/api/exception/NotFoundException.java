@@ -16,6 +16,17 @@ public class NotFoundException extends RuntimeException {
         return new NotFoundException(message, status, reason, solution);
     }
 
+    public static NotFoundException cursorNotFound(String cursorId) {
+
+        String status = "Not found";
+        String reason = String.format("No open cursor found for id '%s'", cursorId);
+        String solution = "The cursor was fully read or expired. Run the query again to open a new cursor";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new NotFoundException(message, status, reason, solution);
+    }
+
     private final String status;
     private final String reason;
     private final String solution;
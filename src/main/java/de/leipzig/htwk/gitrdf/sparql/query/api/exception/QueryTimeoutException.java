@@ -0,0 +1,48 @@
+package de.leipzig.htwk.gitrdf.sparql.query.api.exception;
+
+import java.time.Duration;
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class QueryTimeoutException extends RuntimeException {
+
+    public static QueryTimeoutException queryTimedOut(long id, Duration timeout) {
+
+        String status = "Service Unavailable";
+        String reason = String.format("The SPARQL-Query on the github to rdf entry with the id '%d' did not finish within %d seconds", id, timeout.toSeconds());
+        String solution = "Narrow the query down, for example with a LIMIT or more selective patterns, or request a higher timeout with the 'timeout' parameter";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new QueryTimeoutException(message, status, reason, solution);
+    }
+
+    public static QueryTimeoutException multiOrderQueryTimedOut(List<Long> ids, Duration timeout) {
+
+        String status = "Service Unavailable";
+        String reason = String.format("The SPARQL-Query on the github to rdf entries with the ids %s did not finish within %d seconds", ids, timeout.toSeconds());
+        String solution = "Narrow the query down, for example with a LIMIT, more selective patterns or fewer ids, or request a higher timeout with the 'timeout' parameter";
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new QueryTimeoutException(message, status, reason, solution);
+    }
+
+    private final String status;
+    private final String reason;
+    private final String solution;
+
+    private QueryTimeoutException(String message, String status, String reason, String solution) {
+        super(message);
+
+        this.status = status;
+        this.reason = reason;
+        this.solution = solution;
+    }
+
+    private static String getMessageFrom(String status, String reason, String solution) {
+        return String.format("Status: %s, Reason: %s, Solution: %s", status, reason, solution);
+    }
+}
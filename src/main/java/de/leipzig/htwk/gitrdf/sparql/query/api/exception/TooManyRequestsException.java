@@ -0,0 +1,49 @@
+package de.leipzig.htwk.gitrdf.sparql.query.api.exception;
+
+import java.time.Duration;
+
+import lombok.Getter;
+
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    public static TooManyRequestsException queryQueueFull(Duration retryAfter) {
+
+        String status = "Too Many Requests";
+        String reason = "Too many SPARQL-Queries are currently running or waiting to be executed";
+        String solution = String.format("Retry the query in %d seconds", retryAfter.toSeconds());
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new TooManyRequestsException(message, status, reason, solution, retryAfter);
+    }
+
+    public static TooManyRequestsException tooManyOpenCursors(Duration retryAfter) {
+
+        String status = "Too Many Requests";
+        String reason = "Too many cursors are currently open";
+        String solution = String.format("Retry the query in %d seconds or run it without a page size", retryAfter.toSeconds());
+
+        String message = getMessageFrom(status, reason, solution);
+
+        return new TooManyRequestsException(message, status, reason, solution, retryAfter);
+    }
+
+    private final String status;
+    private final String reason;
+    private final String solution;
+    private final Duration retryAfter;
+
+    private TooManyRequestsException(String message, String status, String reason, String solution, Duration retryAfter) {
+        super(message);
+
+        this.status = status;
+        this.reason = reason;
+        this.solution = solution;
+        this.retryAfter = retryAfter;
+    }
+
+    private static String getMessageFrom(String status, String reason, String solution) {
+        return String.format("Status: %s, Reason: %s, Solution: %s", status, reason, solution);
+    }
+}
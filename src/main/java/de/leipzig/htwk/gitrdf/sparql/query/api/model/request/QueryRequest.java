@@ -7,8 +7,14 @@ public class QueryRequest {
 
     private final String query;
 
-    public QueryRequest(String query) {
+    private final String timeout;
+
+    private final String pageSize;
+
+    public QueryRequest(String query, String timeout, String pageSize) {
         this.query = query;
+        this.timeout = timeout;
+        this.pageSize = pageSize;
     }
 
 }
@@ -0,0 +1,10 @@
+package de.leipzig.htwk.gitrdf.sparql.query.api.response.error;
+
+import lombok.Value;
+
+@Value
+public class QueryTimeoutErrorResponse {
+    String status;
+    String reason;
+    String solution;
+}
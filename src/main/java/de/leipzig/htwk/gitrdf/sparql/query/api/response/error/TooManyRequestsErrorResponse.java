@@ -0,0 +1,10 @@
+package de.leipzig.htwk.gitrdf.sparql.query.api.response.error;
+
+import lombok.Value;
+
+@Value
+public class TooManyRequestsErrorResponse {
+    String status;
+    String reason;
+    String solution;
+}
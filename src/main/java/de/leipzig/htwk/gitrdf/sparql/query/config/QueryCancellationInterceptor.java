@@ -0,0 +1,52 @@
+package de.leipzig.htwk.gitrdf.sparql.query.config;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryCancellation;
+import lombok.extern.slf4j.Slf4j;
+
+// Aborts the running query execution of a streamed response once the async request times out or fails,
+// for example because the client disconnected.
+@Slf4j
+public class QueryCancellationInterceptor implements CallableProcessingInterceptor {
+
+    private static final String CANCELLATION_ATTRIBUTE = QueryCancellationInterceptor.class.getName() + ".cancellation";
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        QueryCancellation cancellation = new QueryCancellation();
+        request.setAttribute(CANCELLATION_ATTRIBUTE, cancellation, RequestAttributes.SCOPE_REQUEST);
+        QueryCancellation.bind(cancellation);
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        QueryCancellation.unbind();
+    }
+
+    @Override
+    public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+        cancel(request, "async request timed out");
+        return RESULT_NONE;
+    }
+
+    @Override
+    public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+        cancel(request, t.getMessage());
+        return RESULT_NONE;
+    }
+
+    private void cancel(NativeWebRequest request, String cause) {
+        Object cancellation = request.getAttribute(CANCELLATION_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        if (cancellation instanceof QueryCancellation queryCancellation) {
+            log.info("Aborting query execution: {}", cause);
+            queryCancellation.cancel();
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package de.leipzig.htwk.gitrdf.sparql.query.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "query")
+public class QueryProperties {
+
+    // used if neither the request nor the endpoint specifies a timeout
+    private Duration defaultTimeout = Duration.ofSeconds(60);
+
+    // upper bound for all timeouts, including the ones requested by clients
+    private Duration maxTimeout = Duration.ofMinutes(5);
+
+    private Map<QueryType, Duration> endpointTimeouts = new EnumMap<>(QueryType.class);
+
+    // The timeouts above bound the evaluation of a query, time it waits for a slow client to take its result
+    // doesn't count. This one bounds the whole query including the client, so large exports to slow clients
+    // aren't aborted in the middle of the body, but a client can't keep a query open forever either.
+    private Duration streamTimeout = Duration.ofMinutes(30);
+
+    private final Scheduler scheduler = new Scheduler();
+
+    private final Cursor cursor = new Cursor();
+
+    private final MultiOrder multiOrder = new MultiOrder();
+
+    private final CostEstimation costEstimation = new CostEstimation();
+
+    public Duration resolveTimeout(QueryType queryType, Duration requestedTimeout) {
+        Duration timeout = requestedTimeout != null
+                ? requestedTimeout
+                : endpointTimeouts.getOrDefault(queryType, defaultTimeout);
+
+        return timeout.compareTo(maxTimeout) > 0 ? maxTimeout : timeout;
+    }
+
+    public Duration resolveStreamTimeout(Duration timeout) {
+        return timeout.compareTo(streamTimeout) > 0 ? timeout : streamTimeout;
+    }
+
+    @Getter
+    @Setter
+    public static class Scheduler {
+
+        // falls back to twice the number of cores if not set
+        private Integer maxConcurrent;
+
+        // keeps slots free for other orders during a burst against a single order, falls back to half of maxConcurrent
+        private Integer maxConcurrentPerOrder;
+
+        // further queries are rejected with 429
+        private int maxQueued = 100;
+
+        private Duration maxQueueWait = Duration.ofSeconds(30);
+
+        // sent as Retry-After header with rejections
+        private Duration retryAfter = Duration.ofSeconds(5);
+
+        // a query whose client takes longer than slowWriteThreshold to accept a write gives its slot up
+        // and continues in one of maxStreaming slots for slow clients, if one is free
+        private int maxStreaming = 64;
+
+        private Duration slowWriteThreshold = Duration.ofMillis(200);
+
+        public int resolveMaxConcurrent() {
+            return maxConcurrent != null ? maxConcurrent : Runtime.getRuntime().availableProcessors() * 2;
+        }
+
+        public int resolveMaxConcurrentPerOrder() {
+            return maxConcurrentPerOrder != null ? maxConcurrentPerOrder : Math.max(1, resolveMaxConcurrent() / 2);
+        }
+
+    }
+
+    @Getter
+    @Setter
+    public static class Cursor {
+
+        // open cursors not fetched from within this duration are closed
+        private Duration ttl = Duration.ofMinutes(2);
+
+        // further cursors are rejected with 429
+        private int maxOpen = 100;
+
+        private int maxPageSize = 10000;
+
+        // views with tdb2 backed layers can't keep their results open across requests, the results are spilled here
+        private Path spillDirectory = Path.of(System.getProperty("java.io.tmpdir"), "gitrdf-query-cursors");
+
+        // cursors on larger results are rejected with 400, the spill file is deleted
+        private DataSize maxSpillSize = DataSize.ofGigabytes(1);
+
+    }
+
+    @Getter
+    @Setter
+    public static class MultiOrder {
+
+        // every order of a query keeps its layers cached, so this also bounds the heap a single request pins
+        private int maxOrders = 20;
+
+    }
+
+    @Getter
+    @Setter
+    public static class CostEstimation {
+
+        private boolean enabled = true;
+
+        // estimated intermediate solutions, queries above are rejected with 400 before their execution
+        private long maxCost = 1_000_000_000L;
+
+        // estimated solutions of queries without a LIMIT, queries paged through a cursor are exempt
+        private long maxResultsWithoutLimit = 10_000_000L;
+
+    }
+
+}
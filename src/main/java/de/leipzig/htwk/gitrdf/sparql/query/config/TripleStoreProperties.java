@@ -0,0 +1,163 @@
+package de.leipzig.htwk.gitrdf.sparql.query.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "triple-store")
+public class TripleStoreProperties {
+
+    // explicit heap budget for all cached models, falls back to heapBudgetRatio of the max heap if not set
+    private DataSize heapBudget;
+
+    private double heapBudgetRatio = 0.5;
+
+    // compact graphs intern terms and keep sorted int indexes, several times smaller but read only
+    private GraphImplementation graphImplementation = GraphImplementation.MEMORY;
+
+    // rough heap cost of one triple in a jena memory graph including nodes and indexes
+    private DataSize bytesPerTriple = DataSize.ofBytes(200);
+
+    // cached models not accessed within this duration are removed
+    private Duration ttl = Duration.ofMinutes(10);
+
+    // threads parsing analysis rdf blobs of cold loads concurrently
+    private int parseParallelism = Runtime.getRuntime().availableProcessors();
+
+    // parsed and optimized queries kept by query text, 0 disables the cache
+    private int parsedQueryCacheSize = 1000;
+
+    // query views merged into a single indexed graph instead of a nested union of their layers, costs extra heap
+    private List<QueryType> materializedViews = new ArrayList<>();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    private final Tdb tdb = new Tdb();
+
+    private final ResultCache resultCache = new ResultCache();
+
+    private final Refresh refresh = new Refresh();
+
+    private final AccessLog accessLog = new AccessLog();
+
+    private final WarmUp warmUp = new WarmUp();
+
+    public long resolveHeapBudgetBytes() {
+        if (heapBudget != null) {
+            return heapBudget.toBytes();
+        }
+
+        return (long) (Runtime.getRuntime().maxMemory() * heapBudgetRatio);
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+
+        // parsed layers are kept as rdf thrift files on local disk to skip the turtle parse on later loads
+        private boolean enabled = true;
+
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "gitrdf-query-snapshots");
+
+    }
+
+    @Getter
+    @Setter
+    public static class Tdb {
+
+        // orders whose base rdf file reaches the threshold are stored in memory mapped tdb2 databases instead of the heap
+        private boolean enabled = false;
+
+        private DataSize threshold = DataSize.ofMegabytes(512);
+
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "gitrdf-query-tdb2");
+
+        // heap taken by the node and block caches of each connected database, charged against the heap budget
+        private DataSize datasetOverhead = DataSize.ofMegabytes(64);
+
+        // a database none of whose layers is cached or read by a query anymore is released after this delay,
+        // layers of the order loaded again within it reuse the open database
+        private Duration releaseDelay = Duration.ofSeconds(30);
+
+    }
+
+    public enum GraphImplementation {
+        MEMORY,
+        COMPACT
+    }
+
+    @Getter
+    @Setter
+    public static class ResultCache {
+
+        // serialized results of repeated queries, dropped as soon as one of the underlying layers is evicted or reloaded
+        private boolean enabled = true;
+
+        private DataSize maxSize = DataSize.ofMegabytes(128);
+
+        // larger results are streamed without being cached
+        private DataSize maxEntrySize = DataSize.ofMegabytes(4);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Refresh {
+
+        // cached analysis layers are checked for added analysis rows, only their rdf is read and added
+        private boolean enabled = true;
+
+        private Duration interval = Duration.ofMinutes(1);
+
+    }
+
+    @Getter
+    @Setter
+    public static class AccessLog {
+
+        // queries per order, persisted so the most queried orders can be preloaded after a restart
+        private boolean enabled = true;
+
+        private Path file = Path.of(System.getProperty("java.io.tmpdir"), "gitrdf-query-access-log.tsv");
+
+        private Duration flushInterval = Duration.ofMinutes(1);
+
+        // only the counts of the most queried orders are kept, the others are dropped on every flush
+        private int maxOrders = 10_000;
+
+    }
+
+    @Getter
+    @Setter
+    public static class WarmUp {
+
+        // layers of these orders are loaded in the background once the service is ready
+        private boolean enabled = false;
+
+        private List<Long> orderIds = new ArrayList<>();
+
+        // the most queried orders of the access log
+        private int mostAccessedOrders = 0;
+
+        // the latest orders whose conversion is done
+        private int recentlyDoneOrders = 0;
+
+        // the layers of these views are loaded for every warmed up order
+        private List<QueryType> queryTypes = new ArrayList<>(List.of(QueryType.BASIC));
+
+        // orders loaded concurrently, kept low so warm-up doesn't compete with the first queries
+        private int parallelism = 2;
+
+    }
+
+}
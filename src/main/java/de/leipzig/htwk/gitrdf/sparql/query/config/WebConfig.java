@@ -1,14 +1,21 @@
 package de.leipzig.htwk.gitrdf.sparql.query.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryExecutor;
+import lombok.RequiredArgsConstructor;
+
 @Configuration
 @EnableWebMvc
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
+    private final QueryExecutor queryExecutor;
+
     // if you add spring security, you need to update to cors configuration, to make sure its processed first, before security layer filters
     @Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -19,4 +26,12 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(false);
     }
 
+    // query results are streamed asynchronously, a query on a large repository can take longer than the container default
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(queryExecutor.getAsyncTaskExecutor());
+        configurer.setDefaultTimeout(-1);
+        configurer.registerCallableInterceptors(new QueryCancellationInterceptor());
+    }
+
 }
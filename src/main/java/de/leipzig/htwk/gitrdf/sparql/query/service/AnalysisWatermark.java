@@ -0,0 +1,6 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+// The analysis rows an analysis layer was loaded from. Rows are only ever added with ascending ids,
+// so rows above maxAnalysisId are new, and fewer than analysisCount rows up to it means rows were removed.
+public record AnalysisWatermark(long maxAnalysisId, int analysisCount) {
+}
@@ -0,0 +1,360 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.jena.graph.Capabilities;
+import org.apache.jena.graph.GraphStatisticsHandler;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.AllCapabilities;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+import org.apache.jena.util.iterator.WrappedIterator;
+
+// Read only graph for cached layers. Every distinct term is stored once and referenced by an int id,
+// the triples are kept as id rows in three sorted int arrays (SPO, POS, OSP), so a lookup is a binary search
+// over primitive arrays instead of walking object per triple hash indexes.
+// Terms are matched by identity like in tdb2: "1"^^xsd:int does not find "01"^^xsd:int.
+public final class CompactGraph extends GraphBase {
+
+    // estimated heap of a distinct term: the node itself, its label and the dictionary entry
+    private static final int BYTES_PER_TERM = 160;
+
+    // ids used for unbound pattern positions and for concrete terms that are not in the dictionary
+    private static final int ANY = -1;
+    private static final int MISSING = -2;
+
+    private static final int[] SPO = { 0, 1, 2 };
+    private static final int[] POS = { 1, 2, 0 };
+    private static final int[] OSP = { 2, 0, 1 };
+
+    // overrides only the non deprecated checks, the deprecated ones of AllCapabilities stay untouched
+    private static final Capabilities READ_ONLY_CAPABILITIES = new AllCapabilities() {
+        @Override public boolean addAllowed() { return false; }
+        @Override public boolean deleteAllowed() { return false; }
+        @Override public boolean iteratorRemoveAllowed() { return false; }
+        @Override public boolean handlesLiteralTyping() { return false; }
+    };
+
+    private final Node[] nodes;
+    private final Map<Node, Integer> ids;
+    private final int size;
+
+    // rows of three ids, each index holds them in its own column order
+    private final int[] spo;
+    private final int[] pos;
+    private final int[] osp;
+
+    private CompactGraph(Node[] nodes, Map<Node, Integer> ids, int[] spo, int size) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.size = size;
+        this.spo = spo;
+        this.pos = permute(spo, size, POS);
+        this.osp = permute(spo, size, OSP);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long estimateBytes() {
+        return (long) size * 3 * Integer.BYTES * 3 + (long) nodes.length * BYTES_PER_TERM;
+    }
+
+    @Override
+    public Capabilities getCapabilities() {
+        return READ_ONLY_CAPABILITIES;
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        return size;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+        Range range = rangeOf(pattern.getSubject(), pattern.getPredicate(), pattern.getObject());
+
+        return range.from() < range.to() ? find(range) : NullIterator.instance();
+    }
+
+    // The number of matches of any pattern is the length of its range, no triple has to be visited.
+    @Override
+    protected GraphStatisticsHandler createStatisticsHandler() {
+        return (subject, predicate, object) -> {
+            Range range = rangeOf(subject, predicate, object);
+            return range.to() - range.from();
+        };
+    }
+
+    // the rows of one index matching a pattern
+    private record Range(int[] index, int[] columns, int from, int to) {
+    }
+
+    private Range rangeOf(Node subject, Node predicate, Node object) {
+        int s = idOf(subject);
+        int p = idOf(predicate);
+        int o = idOf(object);
+
+        // a concrete term that is not in the dictionary can't match anything
+        if (s == MISSING || p == MISSING || o == MISSING) {
+            return new Range(spo, SPO, 0, 0);
+        }
+
+        if (s != ANY) {
+            if (p != ANY) {
+                return rangeOf(spo, SPO, o != ANY ? new int[] { s, p, o } : new int[] { s, p });
+            }
+            return o != ANY ? rangeOf(osp, OSP, new int[] { o, s }) : rangeOf(spo, SPO, new int[] { s });
+        }
+
+        if (p != ANY) {
+            return rangeOf(pos, POS, o != ANY ? new int[] { p, o } : new int[] { p });
+        }
+
+        return o != ANY ? rangeOf(osp, OSP, new int[] { o }) : rangeOf(spo, SPO, new int[0]);
+    }
+
+    private Range rangeOf(int[] index, int[] columns, int[] prefix) {
+        return new Range(index, columns, firstRowNotBefore(index, prefix), firstRowAfter(index, prefix));
+    }
+
+    private int idOf(Node node) {
+        if (node == null || !node.isConcrete()) {
+            return ANY;
+        }
+
+        Integer id = ids.get(node);
+        return id == null ? MISSING : id;
+    }
+
+    private ExtendedIterator<Triple> find(Range range) {
+        int[] index = range.index();
+        int[] columns = range.columns();
+        int to = range.to();
+
+        return WrappedIterator.create(new Iterator<Triple>() {
+
+            private int row = range.from();
+
+            @Override
+            public boolean hasNext() {
+                return row < to;
+            }
+
+            @Override
+            public Triple next() {
+                if (row >= to) {
+                    throw new NoSuchElementException();
+                }
+
+                int[] spoIds = new int[3];
+                for (int column = 0; column < 3; column++) {
+                    spoIds[columns[column]] = index[row * 3 + column];
+                }
+                row++;
+
+                return Triple.create(nodes[spoIds[0]], nodes[spoIds[1]], nodes[spoIds[2]]);
+            }
+        });
+    }
+
+    private int firstRowNotBefore(int[] index, int[] prefix) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(index, middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int firstRowAfter(int[] index, int[] prefix) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(index, middle, prefix) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private static int comparePrefix(int[] index, int row, int[] prefix) {
+        for (int column = 0; column < prefix.length; column++) {
+            int compared = Integer.compare(index[row * 3 + column], prefix[column]);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+
+    private static int[] permute(int[] spoRows, int size, int[] columns) {
+        int[] rows = new int[size * 3];
+
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < 3; column++) {
+                rows[row * 3 + column] = spoRows[row * 3 + columns[column]];
+            }
+        }
+
+        sortRows(rows, 0, size - 1);
+        return rows;
+    }
+
+    // Quicksort over rows of three ints, avoids boxing millions of rows into objects for a comparator.
+    private static void sortRows(int[] rows, int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                insertionSortRows(rows, low, high);
+                return;
+            }
+
+            int pivotRow = (low + high) >>> 1;
+            int pivot0 = rows[pivotRow * 3];
+            int pivot1 = rows[pivotRow * 3 + 1];
+            int pivot2 = rows[pivotRow * 3 + 2];
+
+            int left = low;
+            int right = high;
+            while (left <= right) {
+                while (compareRow(rows, left, pivot0, pivot1, pivot2) < 0) {
+                    left++;
+                }
+                while (compareRow(rows, right, pivot0, pivot1, pivot2) > 0) {
+                    right--;
+                }
+                if (left <= right) {
+                    swapRows(rows, left++, right--);
+                }
+            }
+
+            // recurse into the smaller part, loop on the larger one to bound the stack depth
+            if (right - low < high - left) {
+                sortRows(rows, low, right);
+                low = left;
+            } else {
+                sortRows(rows, left, high);
+                high = right;
+            }
+        }
+    }
+
+    private static void insertionSortRows(int[] rows, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compareRow(rows, j, rows[(j - 1) * 3], rows[(j - 1) * 3 + 1], rows[(j - 1) * 3 + 2]) < 0; j--) {
+                swapRows(rows, j, j - 1);
+            }
+        }
+    }
+
+    private static int compareRow(int[] rows, int row, int key0, int key1, int key2) {
+        int compared = Integer.compare(rows[row * 3], key0);
+        if (compared == 0) {
+            compared = Integer.compare(rows[row * 3 + 1], key1);
+        }
+        if (compared == 0) {
+            compared = Integer.compare(rows[row * 3 + 2], key2);
+        }
+        return compared;
+    }
+
+    private static void swapRows(int[] rows, int first, int second) {
+        for (int column = 0; column < 3; column++) {
+            int swapped = rows[first * 3 + column];
+            rows[first * 3 + column] = rows[second * 3 + column];
+            rows[second * 3 + column] = swapped;
+        }
+    }
+
+    // Collects the triples of a load, parsers and GraphUtil.addInto write into it like into any other graph.
+    public static final class Builder extends GraphBase {
+
+        private final Map<Node, Integer> ids = new HashMap<>();
+        private final List<Node> nodes = new ArrayList<>();
+        private int[] rows = new int[3 * 1024];
+        private int count;
+
+        private Builder() {
+        }
+
+        @Override
+        public void performAdd(Triple triple) {
+            if (rows.length < (count + 1) * 3) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+
+            rows[count * 3] = intern(triple.getSubject());
+            rows[count * 3 + 1] = intern(triple.getPredicate());
+            rows[count * 3 + 2] = intern(triple.getObject());
+            count++;
+        }
+
+        // Sorts and deduplicates the collected triples, the builder must not be used afterwards.
+        public CompactGraph build() {
+            sortRows(rows, 0, count - 1);
+
+            int distinct = 0;
+            for (int row = 0; row < count; row++) {
+                if (distinct == 0 || compareRow(rows, distinct - 1, rows[row * 3], rows[row * 3 + 1], rows[row * 3 + 2]) != 0) {
+                    System.arraycopy(rows, row * 3, rows, distinct * 3, 3);
+                    distinct++;
+                }
+            }
+
+            CompactGraph graph = new CompactGraph(
+                    nodes.toArray(new Node[0]), ids, Arrays.copyOf(rows, distinct * 3), distinct);
+            graph.getPrefixMapping().setNsPrefixes(getPrefixMapping());
+
+            rows = null;
+            return graph;
+        }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+            List<Triple> matches = new ArrayList<>();
+            for (int row = 0; row < count; row++) {
+                Triple triple = Triple.create(
+                        nodes.get(rows[row * 3]), nodes.get(rows[row * 3 + 1]), nodes.get(rows[row * 3 + 2]));
+                if (pattern.matches(triple)) {
+                    matches.add(triple);
+                }
+            }
+            return WrappedIterator.create(matches.iterator());
+        }
+
+        // counts duplicates until the graph is built
+        @Override
+        protected int graphBaseSize() {
+            return count;
+        }
+
+        private int intern(Node node) {
+            return ids.computeIfAbsent(node, n -> {
+                nodes.add(n);
+                return nodes.size() - 1;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.apache.jena.graph.Graph;
+
+@FunctionalInterface
+public interface GraphLoader {
+
+    // Returns the fingerprint of the content that was actually loaded.
+    String loadInto(Graph graph) throws SQLException, IOException;
+
+}
@@ -0,0 +1,75 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.compose.Union;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+
+// Creates the graphs in-memory layers are loaded into, either jena memory graphs or compact graphs.
+// Loaders write into createGraph() like into any graph and turn the result into the cached model with toModel().
+@Component
+@Slf4j
+public class LayerGraphFactory {
+
+    private final boolean compact;
+
+    public LayerGraphFactory(TripleStoreProperties properties) {
+        this.compact = properties.getGraphImplementation() == TripleStoreProperties.GraphImplementation.COMPACT;
+
+        log.info("Cached layers use {} graphs", properties.getGraphImplementation().name().toLowerCase());
+    }
+
+    public Graph createGraph() {
+        return compact ? CompactGraph.builder() : Factory.createDefaultGraph();
+    }
+
+    public Model toModel(Graph graph) {
+        if (graph instanceof CompactGraph.Builder builder) {
+            return ModelFactory.createModelForGraph(builder.build());
+        }
+
+        return ModelFactory.createModelForGraph(graph);
+    }
+
+    // Keeps the loaded graph untouched, queries may still read it, and puts the added triples into a small graph
+    // next to it. The added triples of later extensions are merged into that graph, so the union never nests.
+    public Model extend(Model model, Graph addedTriples) {
+        Graph graph = model.getGraph();
+        Graph loadedGraph = graph instanceof Union union ? (Graph) union.getL() : graph;
+
+        Graph extensionGraph = createGraph();
+        if (graph instanceof Union union) {
+            GraphUtil.addInto(extensionGraph, (Graph) union.getR());
+        }
+        GraphUtil.addInto(extensionGraph, addedTriples);
+
+        Union extendedGraph = new Union(loadedGraph, toModel(extensionGraph).getGraph());
+        extendedGraph.getPrefixMapping().setNsPrefixes(loadedGraph.getPrefixMapping());
+
+        return ModelFactory.createModelForGraph(extendedGraph);
+    }
+
+    // compact graphs know their footprint, memory graphs are estimated with a fixed cost per triple
+    public long estimateBytes(Model model, long bytesPerTriple) {
+        return estimateBytes(model.getGraph(), bytesPerTriple);
+    }
+
+    private long estimateBytes(Graph graph, long bytesPerTriple) {
+        if (graph instanceof CompactGraph compactGraph) {
+            return compactGraph.estimateBytes();
+        }
+
+        if (graph instanceof Union union) {
+            return estimateBytes((Graph) union.getL(), bytesPerTriple) + estimateBytes((Graph) union.getR(), bytesPerTriple);
+        }
+
+        return graph.size() * bytesPerTriple;
+    }
+
+}
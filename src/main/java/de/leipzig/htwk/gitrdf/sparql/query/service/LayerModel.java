@@ -0,0 +1,26 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+
+// A loaded layer, either a plain in-memory model or a named graph of a tdb2 dataset.
+// Models of tdb2 backed layers may only be read inside a read transaction on their dataset.
+// Analysis layers carry the watermark of the analysis rows they contain, the base layer has none.
+public record LayerModel(Model model, Dataset dataset, AnalysisWatermark analysisWatermark) {
+
+    public static LayerModel inMemory(Model model) {
+        return new LayerModel(model, null, null);
+    }
+
+    public static LayerModel tdbBacked(Model model, Dataset dataset) {
+        return new LayerModel(model, dataset, null);
+    }
+
+    public LayerModel withAnalysisWatermark(AnalysisWatermark analysisWatermark) {
+        return new LayerModel(model, dataset, analysisWatermark);
+    }
+
+    public boolean isTdbBacked() {
+        return dataset != null;
+    }
+}
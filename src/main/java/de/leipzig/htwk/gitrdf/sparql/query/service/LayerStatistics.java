@@ -0,0 +1,178 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphStatisticsHandler;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+// Triple counts per predicate of a cached layer, the base of the cardinality estimates of QueryCostEstimator.
+// Distinct subjects and objects are only counted up to DISTINCT_LIMIT per predicate, beyond that every
+// subject or object is assumed to be distinct, which is close enough for key like predicates.
+// Until a layer is scanned, bounds() derives coarser statistics from what its graph knows without a scan.
+public record LayerStatistics(long triples, Map<Node, PredicateStatistics> predicates) {
+
+    private static final int DISTINCT_LIMIT = 10_000;
+
+    public record PredicateStatistics(long triples, long distinctSubjects, long distinctObjects) {
+
+        private PredicateStatistics plus(PredicateStatistics other) {
+            return new PredicateStatistics(
+                    triples + other.triples,
+                    distinctSubjects + other.distinctSubjects,
+                    distinctObjects + other.distinctObjects);
+        }
+    }
+
+    // Must be called inside a read transaction for tdb2 backed layers.
+    public static LayerStatistics scan(Graph graph) {
+        Map<Node, PredicateCounter> counters = new HashMap<>();
+        long triples = 0;
+
+        ExtendedIterator<Triple> iterator = graph.find(Node.ANY, Node.ANY, Node.ANY);
+        try {
+            while (iterator.hasNext()) {
+                Triple triple = iterator.next();
+                counters.computeIfAbsent(triple.getPredicate(), predicate -> new PredicateCounter()).count(triple);
+                triples++;
+            }
+        } finally {
+            iterator.close();
+        }
+
+        Map<Node, PredicateStatistics> predicates = new HashMap<>();
+        counters.forEach((predicate, counter) -> predicates.put(predicate, counter.toStatistics()));
+
+        return new LayerStatistics(triples, Map.copyOf(predicates));
+    }
+
+    // The size of the graph and the triples of the given predicates, as far as the graph counts them without
+    // visiting its triples. Distinct subjects and objects are unknown, every one is assumed to be distinct.
+    // Empty if the graph can't count them cheaply, like tdb2 backed graphs.
+    public static Optional<LayerStatistics> bounds(Graph graph, Set<Node> predicates) {
+        GraphStatisticsHandler statisticsHandler = graph.getStatisticsHandler();
+        if (statisticsHandler == null) {
+            return Optional.empty();
+        }
+
+        Map<Node, PredicateStatistics> predicateBounds = new HashMap<>();
+        for (Node predicate : predicates) {
+            long triples = statisticsHandler.getStatistic(Node.ANY, predicate, Node.ANY);
+            if (triples < 0) {
+                return Optional.empty();
+            }
+            if (triples > 0) {
+                predicateBounds.put(predicate, new PredicateStatistics(triples, triples, triples));
+            }
+        }
+
+        return Optional.of(new LayerStatistics(graph.size(), Map.copyOf(predicateBounds)));
+    }
+
+    // The statistics of a union of layers, distinct counts are upper bounds then.
+    public static LayerStatistics sum(List<LayerStatistics> layerStatistics) {
+        Map<Node, PredicateStatistics> predicates = new HashMap<>();
+        long triples = 0;
+
+        for (LayerStatistics statistics : layerStatistics) {
+            triples += statistics.triples;
+            statistics.predicates.forEach((predicate, predicateStatistics) ->
+                    predicates.merge(predicate, predicateStatistics, PredicateStatistics::plus));
+        }
+
+        return new LayerStatistics(triples, Map.copyOf(predicates));
+    }
+
+    public long triplesOf(Node predicate) {
+        PredicateStatistics predicateStatistics = predicates.get(predicate);
+        return predicateStatistics != null ? predicateStatistics.triples : 0;
+    }
+
+    public long distinctSubjectsOf(Node predicate) {
+        PredicateStatistics predicateStatistics = predicates.get(predicate);
+        return predicateStatistics != null ? predicateStatistics.distinctSubjects : 0;
+    }
+
+    public long distinctObjectsOf(Node predicate) {
+        PredicateStatistics predicateStatistics = predicates.get(predicate);
+        return predicateStatistics != null ? predicateStatistics.distinctObjects : 0;
+    }
+
+    // Expected matches of a single triple pattern, variables are passed as Node.ANY.
+    public long estimateMatches(Node subject, Node predicate, Node object) {
+        if (predicate.isConcrete()) {
+            PredicateStatistics predicateStatistics = predicates.get(predicate);
+            return predicateStatistics != null ? estimateMatches(subject, predicateStatistics, object) : 0;
+        }
+
+        if (!subject.isConcrete() && !object.isConcrete()) {
+            return triples;
+        }
+
+        long matches = 0;
+        for (PredicateStatistics predicateStatistics : predicates.values()) {
+            matches += estimateMatches(subject, predicateStatistics, object);
+        }
+        // bounds() only knows the predicates of the query, a bound term matches at least one triple then
+        return triples > 0 ? Math.max(matches, 1) : matches;
+    }
+
+    private static long estimateMatches(Node subject, PredicateStatistics predicateStatistics, Node object) {
+        long matches = predicateStatistics.triples;
+
+        if (subject.isConcrete()) {
+            matches = divideRoundingUp(matches, predicateStatistics.distinctSubjects);
+        }
+        if (object.isConcrete()) {
+            matches = divideRoundingUp(matches, predicateStatistics.distinctObjects);
+        }
+
+        return matches;
+    }
+
+    private static long divideRoundingUp(long dividend, long divisor) {
+        return divisor > 0 ? (dividend + divisor - 1) / divisor : dividend;
+    }
+
+    private static class PredicateCounter {
+
+        private final Set<Node> subjects = new HashSet<>();
+        private final Set<Node> objects = new HashSet<>();
+        private boolean subjectsExceeded;
+        private boolean objectsExceeded;
+        private long triples;
+
+        private void count(Triple triple) {
+            triples++;
+
+            if (!subjectsExceeded) {
+                subjects.add(triple.getSubject());
+                subjectsExceeded = subjects.size() > DISTINCT_LIMIT;
+                if (subjectsExceeded) {
+                    subjects.clear();
+                }
+            }
+            if (!objectsExceeded) {
+                objects.add(triple.getObject());
+                objectsExceeded = objects.size() > DISTINCT_LIMIT;
+                if (objectsExceeded) {
+                    objects.clear();
+                }
+            }
+        }
+
+        private PredicateStatistics toStatistics() {
+            return new PredicateStatistics(
+                    triples,
+                    subjectsExceeded ? triples : subjects.size(),
+                    objectsExceeded ? triples : objects.size());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+// Published by the TripleStoreManager whenever a charged materialized view is evicted or goes with one of its layers.
+public record MaterializedViewRemovedEvent(long orderId, QueryType queryType, long viewId) {
+}
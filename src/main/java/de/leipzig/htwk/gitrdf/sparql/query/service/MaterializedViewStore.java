@@ -0,0 +1,140 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.rdf.model.Model;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.FutureUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// Query views of the configured types merged into a single graph per order. A view is built once from the
+// cached layers and charged to the heap budget of the TripleStoreManager, which evicts it like a layer
+// and drops it as soon as one of its layers is removed.
+@Component
+@Slf4j
+public class MaterializedViewStore {
+
+    private record MaterializedView(long viewId, long orderId, QueryType queryType, List<LayerModel> layerModels,
+            CompletableFuture<Model> model) {
+    }
+
+    private final Set<QueryType> materializedQueryTypes;
+    private final long bytesPerTriple;
+    private final LayerGraphFactory layerGraphFactory;
+    private final TripleStoreManager tripleStoreManager;
+    private final Map<String, MaterializedView> views = new ConcurrentHashMap<>();
+    private final AtomicLong lastViewId = new AtomicLong();
+
+    public MaterializedViewStore(TripleStoreProperties properties, LayerGraphFactory layerGraphFactory,
+            TripleStoreManager tripleStoreManager, MeterRegistry meterRegistry) {
+        this.materializedQueryTypes = Set.copyOf(properties.getMaterializedViews());
+        this.bytesPerTriple = properties.getBytesPerTriple().toBytes();
+        this.layerGraphFactory = layerGraphFactory;
+        this.tripleStoreManager = tripleStoreManager;
+
+        Gauge.builder("sparql.view.materialized.estimated.bytes", tripleStoreManager, TripleStoreManager::getViewEstimatedBytes)
+                .description("Estimated heap occupied by materialized query views")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (!materializedQueryTypes.isEmpty()) {
+            log.info("Materializing query views of type {}", materializedQueryTypes);
+        }
+    }
+
+    public boolean isMaterialized(QueryType queryType) {
+        return materializedQueryTypes.contains(queryType);
+    }
+
+    // Concurrent requests for the same view wait for a single build. A view built from layers that have
+    // been replaced in the meantime is rebuilt from the given ones.
+    public Model getOrBuild(long orderId, QueryType queryType, List<LayerModel> layerModels)
+            throws SQLException, IOException {
+
+        String viewKey = orderId + ":" + queryType.name();
+        CompletableFuture<Model> build = new CompletableFuture<>();
+
+        MaterializedView view = views.compute(viewKey, (key, existing) ->
+                existing != null && isBuiltFrom(existing, layerModels)
+                        ? existing
+                        : new MaterializedView(lastViewId.incrementAndGet(), orderId, queryType, List.copyOf(layerModels), build));
+
+        if (view.model() != build) {
+            Model model = FutureUtils.getUnwrapped(view.model());
+            tripleStoreManager.touchView(orderId, queryType, view.viewId());
+            return model;
+        }
+
+        try {
+            Model model = merge(layerModels);
+            build.complete(model);
+
+            // a layer removed while the view was built had nothing to drop yet, the view serves this query only then
+            long estimatedBytes = layerGraphFactory.estimateBytes(model, bytesPerTriple);
+            if (!tripleStoreManager.putView(orderId, queryType, layerModels, view.viewId(), estimatedBytes)) {
+                views.remove(viewKey, view);
+                log.debug("Dropped {} view for order {}, its layers were replaced while it was built", queryType, orderId);
+                return model;
+            }
+
+            log.info("Materialized {} view for order {} with {} triples", queryType, orderId, model.size());
+            return model;
+        } catch (Throwable e) {
+            build.completeExceptionally(e);
+            views.remove(viewKey, view);
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onStoreEntryRemoved(StoreEntryRemovedEvent event) {
+        views.values().removeIf(view -> view.orderId() == event.orderId()
+                && view.queryType().getLayers().contains(event.layer()));
+    }
+
+    @EventListener
+    public void onMaterializedViewRemoved(MaterializedViewRemovedEvent event) {
+        views.computeIfPresent(event.orderId() + ":" + event.queryType().name(),
+                (viewKey, view) -> view.viewId() == event.viewId() ? null : view);
+    }
+
+    // both graph implementations store triples present in several layers only once
+    private Model merge(List<LayerModel> layerModels) {
+        Graph graph = layerGraphFactory.createGraph();
+
+        for (LayerModel layerModel : layerModels) {
+            GraphUtil.addInto(graph, layerModel.model().getGraph());
+        }
+
+        return layerGraphFactory.toModel(graph);
+    }
+
+    private boolean isBuiltFrom(MaterializedView view, List<LayerModel> layerModels) {
+        if (view.layerModels().size() != layerModels.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < layerModels.size(); i++) {
+            if (view.layerModels().get(i).model() != layerModels.get(i).model()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,25 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import de.leipzig.htwk.gitrdf.database.common.entity.enums.AnalysisType;
+
+public enum ModelLayer {
+    BASE(null),
+    RATING(AnalysisType.RATING),
+    STATISTIC(AnalysisType.STATISTIC),
+    EXPERT(AnalysisType.EXPERT);
+
+    // null for the base git rdf graph, which is not stored as analysis entries
+    private final AnalysisType analysisType;
+
+    ModelLayer(AnalysisType analysisType) {
+        this.analysisType = analysisType;
+    }
+
+    public AnalysisType getAnalysisType() {
+        return analysisType;
+    }
+
+    public boolean isAnalysisLayer() {
+        return analysisType != null;
+    }
+}
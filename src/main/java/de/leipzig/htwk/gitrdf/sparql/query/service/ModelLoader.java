@@ -0,0 +1,11 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ModelLoader {
+
+    LayerModel load() throws SQLException, IOException;
+
+}
@@ -0,0 +1,153 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+@Component
+@Slf4j
+public class ModelSnapshotStore {
+
+    private static final String SNAPSHOT_SUFFIX = ".trdf";
+    private static final int STREAM_BUFFER_SIZE = 1024 * 64;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final LayerGraphFactory layerGraphFactory;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "model-snapshot-writer"));
+
+    public ModelSnapshotStore(TripleStoreProperties properties, LayerGraphFactory layerGraphFactory) {
+        this.enabled = properties.getSnapshot().isEnabled();
+        this.directory = properties.getSnapshot().getDirectory();
+        this.layerGraphFactory = layerGraphFactory;
+
+        if (enabled) {
+            log.info("Model snapshots are stored in '{}'", directory);
+        }
+    }
+
+    public Optional<Model> read(long orderId, ModelLayer layer, String fingerprint) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Path snapshotFile = getSnapshotFile(orderId, layer, fingerprint);
+
+        if (!Files.isRegularFile(snapshotFile)) {
+            return Optional.empty();
+        }
+
+        Graph graph = layerGraphFactory.createGraph();
+
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(snapshotFile), STREAM_BUFFER_SIZE)) {
+            RDFParser.source(inputStream)
+                    .lang(Lang.RDFTHRIFT)
+                    .parse(graph);
+        } catch (Exception e) {
+            log.warn("Discarding unreadable snapshot '{}': {}", snapshotFile, e.getMessage());
+            deleteQuietly(snapshotFile);
+            return Optional.empty();
+        }
+
+        log.debug("Read {} layer of order {} from snapshot '{}'", layer, orderId, snapshotFile);
+
+        return Optional.of(layerGraphFactory.toModel(graph));
+    }
+
+    // Written in the background so the request that triggered the load does not wait for the disk.
+    // The model must not be modified afterwards, cached layer models never are.
+    public void writeAsync(long orderId, ModelLayer layer, String fingerprint, Model model) {
+        if (!enabled) {
+            return;
+        }
+
+        writer.execute(() -> {
+            try {
+                write(orderId, layer, fingerprint, model);
+            } catch (Exception e) {
+                log.warn("Failed to write snapshot of {} layer for order {}: {}", layer, orderId, e.getMessage());
+            }
+        });
+    }
+
+    private void write(long orderId, ModelLayer layer, String fingerprint, Model model) throws IOException {
+        Path snapshotFile = getSnapshotFile(orderId, layer, fingerprint);
+        Path orderDirectory = Files.createDirectories(snapshotFile.getParent());
+        Path tempFile = Files.createTempFile(orderDirectory, layer.name(), ".tmp");
+
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempFile), STREAM_BUFFER_SIZE)) {
+                RDFDataMgr.write(outputStream, model, RDFFormat.RDF_THRIFT);
+            }
+
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+
+        deleteOutdatedSnapshots(orderDirectory, layer, snapshotFile);
+
+        log.info("Wrote snapshot of {} layer for order {} to '{}'", layer, orderId, snapshotFile);
+    }
+
+    private void deleteOutdatedSnapshots(Path orderDirectory, ModelLayer layer, Path currentSnapshotFile) throws IOException {
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(orderDirectory, layer.name() + "-*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : snapshots) {
+                if (!snapshot.equals(currentSnapshotFile)) {
+                    deleteQuietly(snapshot);
+                }
+            }
+        }
+    }
+
+    private Path getSnapshotFile(long orderId, ModelLayer layer, String fingerprint) {
+        return directory
+                .resolve(Long.toString(orderId))
+                .resolve(layer.name() + "-" + fingerprint + SNAPSHOT_SUFFIX);
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Couldn't delete '{}'", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
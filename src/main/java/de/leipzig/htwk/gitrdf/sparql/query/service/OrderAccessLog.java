@@ -0,0 +1,138 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Counts queries per order and keeps the counts in a small tab separated file across restarts,
+// so the warm-up can preload the orders that were queried most. Only the maxOrders most queried orders
+// are kept, the others are dropped whenever the counts are flushed.
+@Component
+@Slf4j
+public class OrderAccessLog {
+
+    private final boolean enabled;
+    private final Path file;
+    private final int maxOrders;
+    private final Map<Long, LongAdder> accessCounts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "order-access-log-flusher"));
+
+    public OrderAccessLog(TripleStoreProperties properties) {
+        TripleStoreProperties.AccessLog accessLog = properties.getAccessLog();
+        this.enabled = accessLog.isEnabled();
+        this.file = accessLog.getFile();
+        this.maxOrders = Math.max(1, accessLog.getMaxOrders());
+
+        if (enabled) {
+            readAccessCounts();
+
+            long flushIntervalMillis = accessLog.getFlushInterval().toMillis();
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void recordAccess(long orderId) {
+        if (enabled) {
+            accessCounts.computeIfAbsent(orderId, key -> new LongAdder()).increment();
+        }
+    }
+
+    // the most queried orders first
+    public List<Long> getMostAccessedOrderIds(int limit) {
+        return accessCounts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private void readAccessCounts() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t");
+                if (columns.length != 2) {
+                    continue;
+                }
+
+                LongAdder accessCount = new LongAdder();
+                accessCount.add(Long.parseLong(columns[1]));
+                accessCounts.put(Long.parseLong(columns[0]), accessCount);
+            }
+
+            trimToMaxOrders();
+            log.info("Read access counts of {} orders from '{}'", accessCounts.size(), file);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable order access log '{}': {}", file, e.getMessage());
+            accessCounts.clear();
+        }
+    }
+
+    private void trimToMaxOrders() {
+        if (accessCounts.size() <= maxOrders) {
+            return;
+        }
+
+        Set<Long> keptOrderIds = new HashSet<>(getMostAccessedOrderIds(maxOrders));
+        int sizeBefore = accessCounts.size();
+        accessCounts.keySet().retainAll(keptOrderIds);
+
+        log.debug("Dropped access counts of {} rarely queried orders", sizeBefore - accessCounts.size());
+    }
+
+    // written to a temporary file first, so a crash while flushing keeps the previous counts
+    private synchronized void flush() {
+        trimToMaxOrders();
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Long, LongAdder> entry : accessCounts.entrySet()) {
+                    writer.write(entry.getKey() + "\t" + entry.getValue().sum());
+                    writer.newLine();
+                }
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write order access log '{}': {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+
+        if (enabled) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.engine.QueryExecutionBase;
+
+// A parsed query together with its optimized algebra, shared read-only by concurrent executions.
+public record ParsedQuery(Query query, Op optimizedOp, String normalizedQuery) {
+
+    public static ParsedQuery parse(String queryString) {
+        Query query = QueryFactory.create(queryString);
+
+        // resolved once here, executions would otherwise set them lazily on the shared query
+        query.setResultVars();
+
+        Op optimizedOp = Algebra.optimize(Algebra.compile(query), ARQ.getContext());
+
+        return new ParsedQuery(query, optimizedOp, query.toString());
+    }
+
+    public QueryExecution createExecution(Model model) {
+        return createExecution(DatasetFactory.create(model));
+    }
+
+    public QueryExecution createExecution(Dataset dataset) {
+        return new QueryExecutionBase(query, dataset, ARQ.getContext().copy(),
+                PreparedQueryEngine.factoryFor(optimizedOp));
+    }
+
+}
@@ -0,0 +1,49 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+
+@Component
+public class ParsedQueryCache {
+
+    private final int maxEntries;
+
+    // access ordered, the least recently used query is dropped first
+    private final LinkedHashMap<String, ParsedQuery> parsedQueries;
+
+    public ParsedQueryCache(TripleStoreProperties properties) {
+        this.maxEntries = properties.getParsedQueryCacheSize();
+        this.parsedQueries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParsedQuery> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // Invalid queries are not cached, the QueryParseException is thrown on every request.
+    public ParsedQuery getOrParse(String queryString) {
+        synchronized (parsedQueries) {
+            ParsedQuery parsedQuery = parsedQueries.get(queryString);
+            if (parsedQuery != null) {
+                return parsedQuery;
+            }
+        }
+
+        // parsed outside the lock, two threads racing on the same new query both parse it once
+        ParsedQuery parsedQuery = ParsedQuery.parse(queryString);
+
+        if (maxEntries > 0) {
+            synchronized (parsedQueries) {
+                parsedQueries.putIfAbsent(queryString, parsedQuery);
+            }
+        }
+
+        return parsedQuery;
+    }
+
+}
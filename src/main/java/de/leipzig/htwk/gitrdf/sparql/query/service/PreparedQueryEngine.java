@@ -0,0 +1,50 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.engine.Plan;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.main.QueryEngineMain;
+import org.apache.jena.sparql.util.Context;
+
+// Evaluates an already compiled and optimized algebra expression instead of compiling the query again.
+// The standard optimizer does not look at the data, so the optimized op can be shared by all executions.
+public class PreparedQueryEngine extends QueryEngineMain {
+
+    private PreparedQueryEngine(Op optimizedOp, DatasetGraph dataset, Binding input, Context context) {
+        super(optimizedOp, dataset, input, context);
+    }
+
+    @Override
+    protected Op modifyOp(Op op) {
+        return op;
+    }
+
+    public static QueryEngineFactory factoryFor(Op optimizedOp) {
+        return new QueryEngineFactory() {
+
+            @Override
+            public boolean accept(Query query, DatasetGraph dataset, Context context) {
+                return true;
+            }
+
+            @Override
+            public Plan create(Query query, DatasetGraph dataset, Binding input, Context context) {
+                return new PreparedQueryEngine(optimizedOp, dataset, input, context).getPlan();
+            }
+
+            @Override
+            public boolean accept(Op op, DatasetGraph dataset, Context context) {
+                return true;
+            }
+
+            @Override
+            public Plan create(Op op, DatasetGraph dataset, Binding input, Context context) {
+                return new PreparedQueryEngine(op, dataset, input, context).getPlan();
+            }
+        };
+    }
+
+}
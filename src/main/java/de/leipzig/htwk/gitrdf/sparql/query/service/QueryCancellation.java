@@ -0,0 +1,74 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.Optional;
+
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecution;
+
+// Lets the web layer abort the query execution of a request whose client went away or whose async request timed out.
+// Bound to the thread writing the response, the query execution attaches itself while it runs.
+// An execution expired by the QueryExecutor ran out of its evaluation time, it isn't cancelled by the client.
+public class QueryCancellation {
+
+    private static final ThreadLocal<QueryCancellation> CURRENT = new ThreadLocal<>();
+
+    private volatile QueryExecution queryExecution;
+    private volatile boolean cancelled;
+    private volatile boolean expired;
+
+    public static void bind(QueryCancellation cancellation) {
+        CURRENT.set(cancellation);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public static Optional<QueryCancellation> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    // Jena ignores an abort before the execution started, so a query cancelled before is rejected here
+    // and one cancelled until its execution started is aborted again by started().
+    public void attach(QueryExecution queryExecution) {
+        this.queryExecution = queryExecution;
+
+        if (cancelled || expired) {
+            throw new QueryCancelledException();
+        }
+    }
+
+    public void started() {
+        QueryExecution running = queryExecution;
+        if (running != null && (cancelled || expired)) {
+            running.abort();
+        }
+    }
+
+    public void detach() {
+        this.queryExecution = null;
+    }
+
+    public void cancel() {
+        cancelled = true;
+
+        QueryExecution running = queryExecution;
+        if (running != null) {
+            running.abort();
+        }
+    }
+
+    public void expire() {
+        expired = true;
+
+        QueryExecution running = queryExecution;
+        if (running != null) {
+            running.abort();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+}
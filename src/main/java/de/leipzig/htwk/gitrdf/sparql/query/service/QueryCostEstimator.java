@@ -0,0 +1,680 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.OpWalker;
+import org.apache.jena.sparql.algebra.op.Op1;
+import org.apache.jena.sparql.algebra.op.Op2;
+import org.apache.jena.sparql.algebra.op.OpAssign;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpConditional;
+import org.apache.jena.sparql.algebra.op.OpDistinct;
+import org.apache.jena.sparql.algebra.op.OpExtend;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpGraph;
+import org.apache.jena.sparql.algebra.op.OpGroup;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpLeftJoin;
+import org.apache.jena.sparql.algebra.op.OpMinus;
+import org.apache.jena.sparql.algebra.op.OpN;
+import org.apache.jena.sparql.algebra.op.OpNull;
+import org.apache.jena.sparql.algebra.op.OpOrder;
+import org.apache.jena.sparql.algebra.op.OpPath;
+import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpSlice;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.op.OpTopN;
+import org.apache.jena.sparql.algebra.op.OpTriple;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.core.Prologue;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.path.P_Link;
+import org.apache.jena.sparql.path.P_OneOrMore1;
+import org.apache.jena.sparql.path.P_OneOrMoreN;
+import org.apache.jena.sparql.path.P_Path1;
+import org.apache.jena.sparql.path.P_Path2;
+import org.apache.jena.sparql.path.P_ReverseLink;
+import org.apache.jena.sparql.path.P_ZeroOrMore1;
+import org.apache.jena.sparql.path.P_ZeroOrMoreN;
+import org.apache.jena.sparql.path.Path;
+import org.apache.jena.sparql.util.FmtUtils;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Rejects queries before their execution whose estimated number of intermediate solutions exceeds maxCost,
+// typically accidental cartesian products of unconnected patterns or '*' and '+' property paths without a bound end.
+// Queries without a LIMIT whose estimated result exceeds maxResultsWithoutLimit are rejected as well.
+// The estimates are coarse: a join through a variable has |A|·|B| / max(distinct values of the variable)
+// solutions, unconnected patterns multiply. They rely on the statistics of the cached layers, which are
+// gathered by a background scan the first time a layer is queried. Until then in-memory layers are estimated
+// from the counts their graph keeps anyway, queries on tdb2 backed layers without statistics are not checked.
+@Component
+@Slf4j
+public class QueryCostEstimator {
+
+    private static final int MAX_DESCRIPTION_LENGTH = 200;
+
+    private final boolean enabled;
+    private final long maxCost;
+    private final long maxResultsWithoutLimit;
+    private final MeterRegistry meterRegistry;
+
+    // weak, so the statistics of an evicted layer go with its graph
+    private final Map<Graph, LayerStatistics> layerStatistics = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Set<Graph> pendingScans = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+    private final ExecutorService scanner = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "layer-statistics-scanner"));
+
+    public QueryCostEstimator(QueryProperties properties, MeterRegistry meterRegistry) {
+        QueryProperties.CostEstimation costEstimation = properties.getCostEstimation();
+
+        this.enabled = costEstimation.isEnabled();
+        this.maxCost = costEstimation.getMaxCost();
+        this.maxResultsWithoutLimit = costEstimation.getMaxResultsWithoutLimit();
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Paged queries are read page by page through a cursor, they don't need a LIMIT.
+    public void checkCost(ParsedQuery parsedQuery, List<QueryView> queryViews, boolean paged) {
+        if (!enabled) {
+            return;
+        }
+
+        Op op = parsedQuery.optimizedOp();
+        Optional<LayerStatistics> statistics = statisticsOf(queryViews, predicatesOf(op));
+        if (statistics.isEmpty()) {
+            log.debug("Statistics of the layers aren't gathered yet, skipping the cost estimation");
+            return;
+        }
+
+        Query query = parsedQuery.query();
+        Estimation estimation = new Estimation(statistics.get(), query.getPrefixMapping(), op);
+        // an ASK query stops at its first solution
+        if (query.isAskType() && Estimation.isStreaming(op)) {
+            estimation.streamingLimit = 1;
+        }
+        long results = estimation.estimate(op);
+
+        if (estimation.cost > maxCost) {
+            log.info("Rejecting query estimated at {} intermediate solutions: {}", estimation.cost, estimation.findings);
+            meterRegistry.counter("sparql.query.rejected", "cause", "too-expensive").increment();
+            throw BadRequestException.queryTooExpensive(estimation.findings, estimation.cost, maxCost);
+        }
+
+        boolean unlimited = !paged && !query.isAskType() && !query.hasLimit()
+                && !query.hasAggregators() && !query.hasGroupBy();
+
+        if (unlimited && results > maxResultsWithoutLimit) {
+            log.info("Rejecting query without LIMIT estimated at {} solutions", results);
+            meterRegistry.counter("sparql.query.rejected", "cause", "too-large").increment();
+            throw BadRequestException.queryResultTooLarge(estimation.findings, results, maxResultsWithoutLimit);
+        }
+    }
+
+    // The sum over every layer of the views, the default graph of a multi-order query is their union.
+    // Layers not scanned yet contribute the bounds of their graph for the predicates of the query.
+    private Optional<LayerStatistics> statisticsOf(List<QueryView> queryViews, Set<Node> predicates) {
+        List<LayerStatistics> viewStatistics = new ArrayList<>();
+        boolean complete = true;
+
+        for (QueryView queryView : queryViews) {
+            for (LayerModel layerModel : queryView.getLayerModels()) {
+                Graph graph = layerModel.model().getGraph();
+                LayerStatistics statistics = layerStatistics.get(graph);
+
+                if (statistics == null) {
+                    scanInBackground(layerModel);
+                    statistics = layerModel.isTdbBacked()
+                            ? null
+                            : LayerStatistics.bounds(graph, predicates).orElse(null);
+                }
+
+                if (statistics != null) {
+                    viewStatistics.add(statistics);
+                } else {
+                    complete = false;
+                }
+            }
+        }
+
+        return complete ? Optional.of(LayerStatistics.sum(viewStatistics)) : Optional.empty();
+    }
+
+    private static Set<Node> predicatesOf(Op op) {
+        Set<Node> predicates = new HashSet<>();
+
+        OpWalker.walk(op, new OpVisitorBase() {
+            @Override
+            public void visit(OpBGP opBGP) {
+                opBGP.getPattern().forEach(triple -> add(triple.getPredicate()));
+            }
+
+            @Override
+            public void visit(OpTriple opTriple) {
+                add(opTriple.getTriple().getPredicate());
+            }
+
+            @Override
+            public void visit(OpPath opPath) {
+                addLinks(opPath.getTriplePath().getPath());
+            }
+
+            private void addLinks(Path path) {
+                if (path instanceof P_Link link) {
+                    add(link.getNode());
+                } else if (path instanceof P_ReverseLink reverseLink) {
+                    add(reverseLink.getNode());
+                } else if (path instanceof P_Path1 path1) {
+                    addLinks(path1.getSubPath());
+                } else if (path instanceof P_Path2 path2) {
+                    addLinks(path2.getLeft());
+                    addLinks(path2.getRight());
+                }
+            }
+
+            private void add(Node predicate) {
+                if (predicate.isConcrete()) {
+                    predicates.add(predicate);
+                }
+            }
+        });
+
+        return predicates;
+    }
+
+    private void scanInBackground(LayerModel layerModel) {
+        Graph graph = layerModel.model().getGraph();
+        if (!pendingScans.add(graph)) {
+            return;
+        }
+
+        scanner.execute(() -> {
+            long scanStart = System.nanoTime();
+            try {
+                if (layerModel.isTdbBacked()) {
+                    layerModel.dataset().begin(ReadWrite.READ);
+                }
+                try {
+                    layerStatistics.put(graph, LayerStatistics.scan(graph));
+                } finally {
+                    if (layerModel.isTdbBacked()) {
+                        layerModel.dataset().end();
+                    }
+                }
+                log.debug("Gathered layer statistics in {} ms", (System.nanoTime() - scanStart) / 1_000_000);
+            } catch (Exception e) {
+                log.warn("Failed to gather layer statistics: {}", e.getMessage());
+            } finally {
+                pendingScans.remove(graph);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanner.shutdownNow();
+    }
+
+    // A single walk over the optimized algebra. Estimates the solutions of every operator bottom up,
+    // the cost is the largest intermediate result on the way.
+    private static class Estimation {
+
+        private final LayerStatistics statistics;
+        private final PrefixMapping prefixMapping;
+        // variables mentioned by more than one pattern are bound through a join
+        private final Map<Var, Integer> variableMentions;
+
+        private final List<String> findings = new ArrayList<>();
+        private long cost;
+        // below a LIMIT without sorting, grouping or filtering the evaluation stops after that many solutions
+        private long streamingLimit = Long.MAX_VALUE;
+
+        private Estimation(LayerStatistics statistics, PrefixMapping prefixMapping, Op op) {
+            this.statistics = statistics;
+            this.prefixMapping = prefixMapping;
+            this.variableMentions = countVariableMentions(op);
+        }
+
+        // distinct values per variable, a variable without an entry may take a new value in every solution
+        private record Part(Set<Var> variables, long solutions, Map<Var, Long> distinctValues, String description) {
+
+            private Part(Set<Var> variables, long solutions, String description) {
+                this(variables, solutions, Map.of(), description);
+            }
+
+            private long distinctValuesOf(Var variable) {
+                return Math.max(1, Math.min(distinctValues.getOrDefault(variable, solutions), solutions));
+            }
+        }
+
+        private long estimate(Op op) {
+            long solutions = estimateSolutions(op);
+            cost = Math.max(cost, Math.min(solutions, streamingLimit));
+            return solutions;
+        }
+
+        private long estimateSolutions(Op op) {
+            if (op instanceof OpBGP opBGP) {
+                return estimateParts(opBGP.getPattern().getList().stream().map(this::toPart).toList());
+            }
+            if (op instanceof OpTriple opTriple) {
+                return estimateParts(List.of(toPart(opTriple.getTriple())));
+            }
+            if (op instanceof OpPath opPath) {
+                return estimateParts(List.of(toPart(opPath.getTriplePath())));
+            }
+            if (op instanceof OpJoin || op instanceof OpSequence) {
+                return estimateParts(childrenOf(op).stream().map(this::toPart).toList());
+            }
+            if (op instanceof OpLeftJoin || op instanceof OpConditional) {
+                Op2 op2 = (Op2) op;
+                Part left = toPart(op2.getLeft());
+                Part right = toPart(op2.getRight());
+                // an optional part joined through a variable rarely multiplies the solutions,
+                // an unconnected one multiplies them, and keeps them if it has none
+                return Collections.disjoint(left.variables(), right.variables())
+                        ? estimateParts(List.of(left, new Part(right.variables(), Math.max(1, right.solutions()), right.distinctValues(), right.description())))
+                        : left.solutions();
+            }
+            if (op instanceof OpUnion opUnion) {
+                return saturatedAdd(estimate(opUnion.getLeft()), estimate(opUnion.getRight()));
+            }
+            if (op instanceof OpMinus opMinus) {
+                estimate(opMinus.getRight());
+                return estimate(opMinus.getLeft());
+            }
+            if (op instanceof OpSlice opSlice) {
+                return estimateSlice(opSlice);
+            }
+            if (op instanceof OpTopN opTopN) {
+                return Math.min(estimate(opTopN.getSubOp()), opTopN.getLimit());
+            }
+            if (op instanceof OpGroup opGroup) {
+                long solutions = estimate(opGroup.getSubOp());
+                return opGroup.getGroupVars().isEmpty() ? 1 : solutions;
+            }
+            if (op instanceof OpTable opTable) {
+                return opTable.getTable().size();
+            }
+            if (op instanceof OpNull) {
+                return 0;
+            }
+            if (op instanceof Op1 op1) {
+                return estimate(op1.getSubOp());
+            }
+            if (op instanceof Op2 op2) {
+                return Math.max(estimate(op2.getLeft()), estimate(op2.getRight()));
+            }
+            if (op instanceof OpN) {
+                return estimateParts(childrenOf(op).stream().map(this::toPart).toList());
+            }
+
+            return 1;
+        }
+
+        private long estimateSlice(OpSlice opSlice) {
+            if (opSlice.getLength() < 0) {
+                return estimate(opSlice.getSubOp());
+            }
+
+            long limit = saturatedAdd(Math.max(0, opSlice.getStart()), opSlice.getLength());
+            long outerStreamingLimit = streamingLimit;
+            if (isStreaming(opSlice.getSubOp())) {
+                streamingLimit = Math.min(streamingLimit, limit);
+            }
+
+            try {
+                return Math.min(estimate(opSlice.getSubOp()), limit);
+            } finally {
+                streamingLimit = outerStreamingLimit;
+            }
+        }
+
+        // Connected parts are joined one by one, unconnected ones multiply.
+        private long estimateParts(List<Part> parts) {
+            List<List<Part>> components = connectedComponents(parts);
+
+            long solutions = 1;
+            List<String> multiplyingComponents = new ArrayList<>();
+
+            for (List<Part> component : components) {
+                long componentSolutions = joinAll(component).solutions();
+                solutions = saturatedMultiply(solutions, componentSolutions);
+
+                if (componentSolutions > 1) {
+                    multiplyingComponents.add(describe(component));
+                }
+            }
+
+            if (multiplyingComponents.size() > 1) {
+                findings.add(String.format("The patterns %s share no variable, their cartesian product has about %d solutions",
+                        String.join(" and ", multiplyingComponents), solutions));
+            }
+
+            return solutions;
+        }
+
+        // Starts with the most selective part and joins the most selective part connected to the result so far.
+        private Part joinAll(List<Part> component) {
+            List<Part> remaining = new ArrayList<>(component);
+            remaining.sort(Comparator.comparingLong(Part::solutions));
+
+            Part joined = remaining.remove(0);
+            while (!remaining.isEmpty()) {
+                int next = 0;
+                while (next < remaining.size() - 1 && Collections.disjoint(remaining.get(next).variables(), joined.variables())) {
+                    next++;
+                }
+                joined = join(joined, remaining.remove(next));
+            }
+
+            return joined;
+        }
+
+        // |A|·|B| / max(distinct values of a shared variable), the join keeps the fewer distinct values of a variable.
+        private Part join(Part left, Part right) {
+            Set<Var> variables = new HashSet<>(left.variables());
+            variables.addAll(right.variables());
+
+            long divisor = 1;
+            for (Var variable : left.variables()) {
+                if (right.variables().contains(variable)) {
+                    divisor = Math.max(divisor, Math.max(left.distinctValuesOf(variable), right.distinctValuesOf(variable)));
+                }
+            }
+            // in double, the product of two large parts overflows a long before the division
+            long solutions = (long) Math.ceil((double) left.solutions() * right.solutions() / divisor);
+            cost = Math.max(cost, Math.min(solutions, streamingLimit));
+
+            Map<Var, Long> distinctValues = new HashMap<>();
+            for (Var variable : variables) {
+                long leftValues = left.variables().contains(variable) ? left.distinctValuesOf(variable) : Long.MAX_VALUE;
+                long rightValues = right.variables().contains(variable) ? right.distinctValuesOf(variable) : Long.MAX_VALUE;
+                distinctValues.put(variable, Math.min(leftValues, rightValues));
+            }
+
+            if (solutions > Math.max(left.solutions(), right.solutions())) {
+                findings.add(String.format("The patterns { %s } and { %s } joined on few distinct values have about %d solutions",
+                        abbreviate(left.description()), abbreviate(right.description()), solutions));
+            }
+
+            return new Part(variables, solutions, distinctValues, abbreviate(left.description() + " . " + right.description()));
+        }
+
+        private Part toPart(Op op) {
+            return new Part(OpVars.visibleVars(op), estimate(op), describe(op));
+        }
+
+        private Part toPart(Triple triple) {
+            long solutions = statistics.estimateMatches(
+                    concreteOrAny(triple.getSubject()), concreteOrAny(triple.getPredicate()), concreteOrAny(triple.getObject()));
+            cost = Math.max(cost, Math.min(solutions, streamingLimit));
+
+            Map<Var, Long> distinctValues = new HashMap<>();
+            Node predicate = triple.getPredicate();
+            if (predicate.isConcrete()) {
+                if (triple.getSubject().isVariable()) {
+                    distinctValues.merge(Var.alloc(triple.getSubject()), statistics.distinctSubjectsOf(predicate), Math::min);
+                }
+                if (triple.getObject().isVariable()) {
+                    distinctValues.merge(Var.alloc(triple.getObject()), statistics.distinctObjectsOf(predicate), Math::min);
+                }
+            } else if (predicate.isVariable()) {
+                distinctValues.put(Var.alloc(predicate), (long) statistics.predicates().size());
+            }
+
+            return new Part(variablesOf(triple.getSubject(), triple.getPredicate(), triple.getObject()), solutions,
+                    distinctValues, describe(triple));
+        }
+
+        // The closure of a '*' or '+' path from every node reaches up to every other node connected by its predicates.
+        private Part toPart(TriplePath triplePath) {
+            long pathTriples = triplesOf(triplePath.getPath());
+            boolean subjectBound = isBound(triplePath.getSubject());
+            boolean objectBound = isBound(triplePath.getObject());
+            String description = describe(triplePath);
+
+            long solutions;
+            if (subjectBound && objectBound) {
+                solutions = 1;
+            } else if (subjectBound || objectBound || !isTransitive(triplePath.getPath())) {
+                solutions = pathTriples;
+            } else {
+                solutions = saturatedMultiply(pathTriples, pathTriples);
+                findings.add(String.format("The property path %s has no bound end, its closure may have about %d pairs",
+                        description, solutions));
+            }
+            cost = Math.max(cost, Math.min(solutions, streamingLimit));
+
+            return new Part(variablesOf(triplePath.getSubject(), triplePath.getObject()), solutions, description);
+        }
+
+        private String describe(Op op) {
+            if (op instanceof OpBGP opBGP) {
+                return String.join(" . ", opBGP.getPattern().getList().stream().map(this::describe).toList());
+            }
+            if (op instanceof OpPath opPath) {
+                return describe(opPath.getTriplePath());
+            }
+            return abbreviate(op.toString().replaceAll("\\s+", " ").trim());
+        }
+
+        private String describe(Triple triple) {
+            return FmtUtils.stringForTriple(triple, prefixMapping);
+        }
+
+        private String describe(TriplePath triplePath) {
+            return FmtUtils.stringForNode(triplePath.getSubject(), prefixMapping) + " "
+                    + triplePath.getPath().toString(new Prologue(prefixMapping)) + " "
+                    + FmtUtils.stringForNode(triplePath.getObject(), prefixMapping);
+        }
+
+        private boolean isBound(Node node) {
+            return node.isConcrete() || (node.isVariable() && variableMentions.getOrDefault(Var.alloc(node), 0) > 1);
+        }
+
+        private long triplesOf(Path path) {
+            if (path instanceof P_Link link) {
+                return statistics.triplesOf(link.getNode());
+            }
+            if (path instanceof P_ReverseLink reverseLink) {
+                return statistics.triplesOf(reverseLink.getNode());
+            }
+            if (path instanceof P_Path1 path1) {
+                return triplesOf(path1.getSubPath());
+            }
+            if (path instanceof P_Path2 path2) {
+                return saturatedAdd(triplesOf(path2.getLeft()), triplesOf(path2.getRight()));
+            }
+            // negated property sets match almost every triple
+            return statistics.triples();
+        }
+
+        private static boolean isTransitive(Path path) {
+            if (path instanceof P_ZeroOrMore1 || path instanceof P_ZeroOrMoreN
+                    || path instanceof P_OneOrMore1 || path instanceof P_OneOrMoreN) {
+                return true;
+            }
+            if (path instanceof P_Path1 path1) {
+                return isTransitive(path1.getSubPath());
+            }
+            if (path instanceof P_Path2 path2) {
+                return isTransitive(path2.getLeft()) || isTransitive(path2.getRight());
+            }
+            return false;
+        }
+
+        // sorting, grouping, duplicate removal and filters consume solutions without passing all of them on
+        private static boolean isStreaming(Op op) {
+            boolean[] streaming = { true };
+
+            OpWalker.walk(op, new OpVisitorBase() {
+                @Override
+                public void visit(OpOrder opOrder) {
+                    streaming[0] = false;
+                }
+
+                @Override
+                public void visit(OpTopN opTopN) {
+                    streaming[0] = false;
+                }
+
+                @Override
+                public void visit(OpGroup opGroup) {
+                    streaming[0] = false;
+                }
+
+                @Override
+                public void visit(OpDistinct opDistinct) {
+                    streaming[0] = false;
+                }
+
+                @Override
+                public void visit(OpFilter opFilter) {
+                    streaming[0] = false;
+                }
+            });
+
+            return streaming[0];
+        }
+
+        private static Map<Var, Integer> countVariableMentions(Op op) {
+            Map<Var, Integer> mentions = new HashMap<>();
+
+            OpWalker.walk(op, new OpVisitorBase() {
+                @Override
+                public void visit(OpBGP opBGP) {
+                    opBGP.getPattern().forEach(triple ->
+                            mention(variablesOf(triple.getSubject(), triple.getPredicate(), triple.getObject())));
+                }
+
+                @Override
+                public void visit(OpTriple opTriple) {
+                    Triple triple = opTriple.getTriple();
+                    mention(variablesOf(triple.getSubject(), triple.getPredicate(), triple.getObject()));
+                }
+
+                @Override
+                public void visit(OpPath opPath) {
+                    mention(variablesOf(opPath.getTriplePath().getSubject(), opPath.getTriplePath().getObject()));
+                }
+
+                @Override
+                public void visit(OpTable opTable) {
+                    mention(Set.copyOf(opTable.getTable().getVars()));
+                }
+
+                @Override
+                public void visit(OpExtend opExtend) {
+                    mention(opExtend.getVarExprList().getVars());
+                }
+
+                @Override
+                public void visit(OpAssign opAssign) {
+                    mention(opAssign.getVarExprList().getVars());
+                }
+
+                @Override
+                public void visit(OpGraph opGraph) {
+                    mention(variablesOf(opGraph.getNode()));
+                }
+
+                private void mention(Iterable<Var> variables) {
+                    variables.forEach(variable -> mentions.merge(variable, 1, Integer::sum));
+                }
+            });
+
+            return mentions;
+        }
+
+        private static List<Op> childrenOf(Op op) {
+            if (op instanceof OpN opN) {
+                return opN.getElements();
+            }
+            Op2 op2 = (Op2) op;
+            return List.of(op2.getLeft(), op2.getRight());
+        }
+
+        private static List<List<Part>> connectedComponents(List<Part> parts) {
+            List<List<Part>> components = new ArrayList<>();
+            List<Set<Var>> componentVariables = new ArrayList<>();
+
+            for (Part part : parts) {
+                List<Part> component = new ArrayList<>(List.of(part));
+                Set<Var> variables = new HashSet<>(part.variables());
+
+                // merges every component sharing a variable with the part
+                for (int i = components.size() - 1; i >= 0; i--) {
+                    if (!Collections.disjoint(componentVariables.get(i), variables)) {
+                        component.addAll(components.remove(i));
+                        variables.addAll(componentVariables.remove(i));
+                    }
+                }
+
+                components.add(component);
+                componentVariables.add(variables);
+            }
+
+            return components;
+        }
+
+        private static Set<Var> variablesOf(Node... nodes) {
+            Set<Var> variables = new HashSet<>();
+            for (Node node : nodes) {
+                if (node.isVariable()) {
+                    variables.add(Var.alloc(node));
+                }
+            }
+            return variables;
+        }
+
+        private static Node concreteOrAny(Node node) {
+            return node.isConcrete() ? node : Node.ANY;
+        }
+
+        private static String describe(List<Part> component) {
+            return "{ " + abbreviate(String.join(" . ", component.stream().map(Part::description).toList())) + " }";
+        }
+
+        private static String abbreviate(String description) {
+            return description.length() > MAX_DESCRIPTION_LENGTH
+                    ? description.substring(0, MAX_DESCRIPTION_LENGTH) + "..."
+                    : description;
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+
+        private static long saturatedMultiply(long a, long b) {
+            return a != 0 && b > Long.MAX_VALUE / a ? Long.MAX_VALUE : a * b;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+// The open result of a SELECT query a client pages through. Either the live result of the query execution,
+// which continues where the previous page stopped, or a result spilled to a file that is read page by page.
+@Getter
+@Slf4j
+public class QueryCursor {
+
+    private static final int STREAM_BUFFER_SIZE = 1024 * 64;
+
+    private final String id = UUID.randomUUID().toString();
+    private final long orderId;
+    private final QueryType queryType;
+    private final int pageSize;
+    private final ResultSet resultSet;
+
+    // only set for live results
+    private final QueryExecution queryExecution;
+
+    // only set for spilled results
+    private final Path spillFile;
+    private final InputStream spillInputStream;
+
+    // pages of one cursor are read one after another
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Instant lastAccessedAt = Instant.now();
+    private boolean closed;
+    // the view of a live result left the cache, the cursor is closed after the page being read
+    private volatile boolean stale;
+
+    public record Page(List<Binding> bindings, boolean hasMore) {
+    }
+
+    private QueryCursor(long orderId, QueryType queryType, int pageSize, ResultSet resultSet,
+            QueryExecution queryExecution, Path spillFile, InputStream spillInputStream) {
+
+        this.orderId = orderId;
+        this.queryType = queryType;
+        this.pageSize = pageSize;
+        this.resultSet = resultSet;
+        this.queryExecution = queryExecution;
+        this.spillFile = spillFile;
+        this.spillInputStream = spillInputStream;
+    }
+
+    // Takes over the query execution, which is closed right away if the query can't be started.
+    public static QueryCursor live(long orderId, QueryType queryType, int pageSize, QueryExecution queryExecution) {
+        try {
+            return new QueryCursor(orderId, queryType, pageSize, queryExecution.execSelect(), queryExecution, null, null);
+        } catch (RuntimeException e) {
+            queryExecution.close();
+            throw e;
+        }
+    }
+
+    // the file holds the result as sparql results in rdf thrift, which is read lazily
+    public static QueryCursor spilled(long orderId, QueryType queryType, int pageSize, Path spillFile) throws IOException {
+        InputStream spillInputStream = new BufferedInputStream(Files.newInputStream(spillFile), STREAM_BUFFER_SIZE);
+        try {
+            ResultSet resultSet = ResultSetMgr.read(spillInputStream, ResultSetLang.SPARQLResultSetThrift);
+            return new QueryCursor(orderId, queryType, pageSize, resultSet, null, spillFile, spillInputStream);
+        } catch (RuntimeException e) {
+            spillInputStream.close();
+            Files.deleteIfExists(spillFile);
+            throw e;
+        }
+    }
+
+    public List<String> getResultVars() {
+        return resultSet.getResultVars();
+    }
+
+    // Must be called while holding the lock
+    public Page nextPage() {
+        lastAccessedAt = Instant.now();
+
+        List<Binding> bindings = new ArrayList<>(Math.min(pageSize, 1024));
+        while (bindings.size() < pageSize && resultSet.hasNext()) {
+            bindings.add(resultSet.nextBinding());
+        }
+
+        return new Page(bindings, resultSet.hasNext());
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void markStale() {
+        stale = true;
+    }
+
+    public boolean isExpired(Duration ttl) {
+        return Instant.now().isAfter(lastAccessedAt.plus(ttl));
+    }
+
+    // Reading a spilled result is cheap and never aborted, a live page continues the query evaluation.
+    public void abort() {
+        if (queryExecution != null) {
+            queryExecution.abort();
+        }
+    }
+
+    // Must be called while holding the lock
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (queryExecution != null) {
+            queryExecution.close();
+        }
+
+        if (spillFile != null) {
+            try {
+                spillInputStream.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.debug("Couldn't delete spilled cursor result '{}'", spillFile, e);
+            }
+        }
+    }
+}
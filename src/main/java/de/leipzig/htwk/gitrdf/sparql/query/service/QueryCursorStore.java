@@ -0,0 +1,257 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.NotFoundException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.TooManyRequestsException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Open cursors by id. Cursors are closed once their last page was read, if a page fails,
+// or if they were not fetched from within the ttl. Live cursors keep the layers of their view on the heap,
+// so they are also closed once one of those layers or their materialized view is removed from the cache.
+@Component
+@Slf4j
+public class QueryCursorStore {
+
+    private static final String SPILL_FILE_PREFIX = "cursor-";
+
+    private final Duration ttl;
+    private final int maxOpen;
+    private final Path spillDirectory;
+    private final DataSize maxSpillSize;
+    private final Duration retryAfter;
+
+    private final Map<String, QueryCursor> cursors = new ConcurrentHashMap<>();
+    // one per open or reserved cursor, taken before the query of a cursor is evaluated
+    private final Semaphore slots;
+    // also aborts live pages exceeding their timeout
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "query-cursor-cleanup"));
+
+    public QueryCursorStore(QueryProperties properties, MeterRegistry meterRegistry) {
+        this.ttl = properties.getCursor().getTtl();
+        this.maxOpen = properties.getCursor().getMaxOpen();
+        this.spillDirectory = properties.getCursor().getSpillDirectory();
+        this.maxSpillSize = properties.getCursor().getMaxSpillSize();
+        this.retryAfter = properties.getScheduler().getRetryAfter();
+        this.slots = new Semaphore(Math.max(0, maxOpen));
+
+        deleteLeftoverSpillFiles();
+
+        Gauge.builder("sparql.query.cursors.open", cursors, Map::size)
+                .description("Cursors waiting for their next page to be fetched")
+                .register(meterRegistry);
+
+        scheduler.scheduleWithFixedDelay(this::closeExpiredCursors, 15, 15, TimeUnit.SECONDS);
+    }
+
+    // Has to be called before the query of the cursor is evaluated, so a rejection doesn't waste
+    // the evaluation or the spill of its result. Closing the reservation frees the slot unless a cursor was registered.
+    public Reservation reserve() {
+        if (!slots.tryAcquire()) {
+            throw TooManyRequestsException.tooManyOpenCursors(retryAfter);
+        }
+
+        return new Reservation();
+    }
+
+    public Optional<QueryCursor> get(String cursorId) {
+        return Optional.ofNullable(cursors.get(cursorId));
+    }
+
+    // Closes the cursor after its last page and if reading the page failed, a timed out live page is aborted.
+    public QueryCursor.Page readPage(QueryCursor cursor, Duration timeout) {
+        cursor.getLock().lock();
+        try {
+            if (cursor.isClosed()) {
+                throw NotFoundException.cursorNotFound(cursor.getId());
+            }
+
+            ScheduledFuture<?> abort = scheduler.schedule(cursor::abort, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            boolean hasMore = false;
+            try {
+                QueryCursor.Page page = cursor.nextPage();
+                hasMore = page.hasMore();
+                return page;
+            } finally {
+                abort.cancel(false);
+                if (!hasMore || cursor.isStale()) {
+                    remove(cursor);
+                    cursor.close();
+                }
+            }
+        } finally {
+            cursor.getLock().unlock();
+        }
+    }
+
+    public Path createSpillFile() throws IOException {
+        Files.createDirectories(spillDirectory);
+        return Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, ".trs");
+    }
+
+    // Fails with a BadRequestException once more than the max spill size is written.
+    public OutputStream newSpillOutputStream(Path spillFile) throws IOException {
+        return new FilterOutputStream(Files.newOutputStream(spillFile)) {
+
+            private long written;
+
+            @Override
+            public void write(int b) throws IOException {
+                count(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                count(len);
+                out.write(b, off, len);
+            }
+
+            private void count(int bytes) {
+                written += bytes;
+                if (written > maxSpillSize.toBytes()) {
+                    throw BadRequestException.cursorResultTooLarge(maxSpillSize);
+                }
+            }
+        };
+    }
+
+    // A cursor whose page is being read right now is closed by the reader after the page.
+    public void closeStale(QueryCursor cursor) {
+        cursor.markStale();
+
+        if (cursor.getLock().tryLock()) {
+            try {
+                remove(cursor);
+                cursor.close();
+            } finally {
+                cursor.getLock().unlock();
+            }
+        }
+    }
+
+    // Published under the lock of the TripleStoreManager, so cursors are never waited for here.
+    @EventListener
+    public void onStoreEntryRemoved(StoreEntryRemovedEvent event) {
+        closeLiveCursors(event.orderId(), queryType -> queryType.getLayers().contains(event.layer()));
+    }
+
+    @EventListener
+    public void onMaterializedViewRemoved(MaterializedViewRemovedEvent event) {
+        closeLiveCursors(event.orderId(), queryType -> queryType == event.queryType());
+    }
+
+    private void closeLiveCursors(long orderId, Predicate<QueryType> queryTypeFilter) {
+        for (QueryCursor cursor : cursors.values()) {
+            if (cursor.getQueryExecution() != null && cursor.getOrderId() == orderId
+                    && queryTypeFilter.test(cursor.getQueryType())) {
+                closeStale(cursor);
+                log.debug("Closed cursor of order {}, its {} view was removed from the cache", orderId, cursor.getQueryType());
+            }
+        }
+    }
+
+    // a cursor that is currently read is in use and skipped
+    private void closeExpiredCursors() {
+        for (QueryCursor cursor : cursors.values()) {
+            if (cursor.isExpired(ttl) && cursor.getLock().tryLock()) {
+                try {
+                    remove(cursor);
+                    cursor.close();
+                    log.debug("Closed expired cursor of order {}", cursor.getOrderId());
+                } finally {
+                    cursor.getLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void remove(QueryCursor cursor) {
+        if (cursors.remove(cursor.getId()) != null) {
+            slots.release();
+        }
+    }
+
+    private void closeLocked(QueryCursor cursor) {
+        cursor.getLock().lock();
+        try {
+            cursor.close();
+        } finally {
+            cursor.getLock().unlock();
+        }
+    }
+
+    // spill files of a previous run can't be read anymore, their cursors are gone
+    private void deleteLeftoverSpillFiles() {
+        if (!Files.isDirectory(spillDirectory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> spillFiles = Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*")) {
+            for (Path spillFile : spillFiles) {
+                Files.deleteIfExists(spillFile);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete leftover cursor spill files in '{}': {}", spillDirectory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+
+        cursors.values().forEach(this::closeLocked);
+        cursors.clear();
+    }
+
+    public class Reservation implements AutoCloseable {
+
+        private boolean settled;
+
+        private Reservation() {
+        }
+
+        public synchronized void register(QueryCursor cursor) {
+            if (settled) {
+                throw new IllegalStateException("Cursor reservation was already used or released");
+            }
+
+            settled = true;
+            cursors.put(cursor.getId(), cursor);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!settled) {
+                settled = true;
+                slots.release();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.FutureUtils;
+import jakarta.annotation.PreDestroy;
+
+// Queries are evaluated on a bounded pool of platform threads, a cpu bound evaluation on a virtual thread
+// would occupy one of the few carrier threads and stall the requests behind it. Only the writes of the
+// response body run on virtual threads, a response waiting for a slow client doesn't hold a platform thread.
+// A streamed evaluation is aborted once it computed longer than its timeout, time it is blocked on a client
+// too slow to take the result doesn't count, that is only bounded by the stream timeout of the execution.
+@Component
+public class QueryExecutor {
+
+    // chunks of the result waiting for the client before the evaluation blocks
+    private static final int PIPE_CHUNKS = 4;
+
+    private final SimpleAsyncTaskExecutor responseExecutor = new SimpleAsyncTaskExecutor("sparql-response-");
+    private final ThreadPoolTaskExecutor evaluationExecutor = new ThreadPoolTaskExecutor();
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "sparql-query-deadlines"));
+
+    public QueryExecutor(QueryProperties properties) {
+        responseExecutor.setVirtualThreads(true);
+
+        // every evaluation holds an execution or a streaming slot of the QueryScheduler, so the pool never has to queue for long
+        QueryProperties.Scheduler scheduler = properties.getScheduler();
+        int poolSize = Math.max(1, scheduler.resolveMaxConcurrent()) + Math.max(0, scheduler.getMaxStreaming());
+        evaluationExecutor.setThreadNamePrefix("sparql-query-");
+        evaluationExecutor.setCorePoolSize(poolSize);
+        evaluationExecutor.setMaxPoolSize(poolSize);
+        evaluationExecutor.initialize();
+    }
+
+    // writes the StreamingResponseBody of async requests
+    public AsyncTaskExecutor getAsyncTaskExecutor() {
+        return responseExecutor;
+    }
+
+    // Blocks the calling request thread until the task finished, which is cheap on a virtual thread.
+    public <T> T execute(Callable<T> task) throws SQLException, IOException {
+        return FutureUtils.getUnwrapped(evaluationExecutor.submit(task));
+    }
+
+    // Runs the evaluation on the pool, it writes its result into a pipe the calling response thread drains
+    // to the client. Returns once the result is written, rethrows the failure of the evaluation.
+    public void stream(StreamingResponseBody evaluation, Duration timeout, OutputStream outputStream) throws IOException {
+        // bound to the response thread, the evaluation attaches its query execution to it
+        QueryCancellation cancellation = QueryCancellation.current().orElseGet(QueryCancellation::new);
+        ResultPipe resultPipe = new ResultPipe(PIPE_CHUNKS);
+        EvaluationDeadline deadline = new EvaluationDeadline(resultPipe, cancellation, timeout.toNanos());
+
+        Future<?> evaluationFuture = evaluationExecutor.submit(() -> {
+            QueryCancellation.bind(cancellation);
+            try (OutputStream sink = resultPipe.sink()) {
+                evaluation.writeTo(sink);
+            } finally {
+                deadline.stop();
+                QueryCancellation.unbind();
+            }
+            return null;
+        });
+        deadline.start();
+
+        try {
+            resultPipe.drainTo(outputStream);
+        } catch (IOException | RuntimeException e) {
+            // the client is gone, an evaluation between two chunks stops at its next step
+            cancellation.cancel();
+            awaitQuietly(evaluationFuture);
+            throw e;
+        }
+
+        try {
+            FutureUtils.getUnwrapped(evaluationFuture);
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // the caller releases its QueryScheduler slot afterwards, the evaluation must not outlive it
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the failure of the client write is reported instead
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evaluationExecutor.shutdown();
+        deadlines.shutdownNow();
+    }
+
+    // Checks again once the evaluation could have used up the rest of its time.
+    private class EvaluationDeadline implements Runnable {
+
+        private final ResultPipe resultPipe;
+        private final QueryCancellation cancellation;
+        private final long timeoutNanos;
+        private final long evaluationStart = System.nanoTime();
+
+        private volatile boolean stopped;
+        private volatile ScheduledFuture<?> nextCheck;
+
+        private EvaluationDeadline(ResultPipe resultPipe, QueryCancellation cancellation, long timeoutNanos) {
+            this.resultPipe = resultPipe;
+            this.cancellation = cancellation;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        private void start() {
+            schedule(timeoutNanos);
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+
+            long evaluatedNanos = System.nanoTime() - evaluationStart - resultPipe.getBlockedNanos();
+            if (evaluatedNanos >= timeoutNanos) {
+                cancellation.expire();
+            } else {
+                schedule(timeoutNanos - evaluatedNanos);
+            }
+        }
+
+        private void schedule(long delayNanos) {
+            try {
+                nextCheck = deadlines.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+
+            ScheduledFuture<?> check = nextCheck;
+            if (check != null) {
+                check.cancel(false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+// Meters of the load, cache and query phases, exposed through the actuator metrics and prometheus endpoints.
+@Component
+@RequiredArgsConstructor
+public class QueryMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public void recordLayerLookup(QueryType queryType, ModelLayer layer, boolean hit) {
+        Counter.builder("sparql.store.lookups")
+                .description("Layer lookups of query views, misses trigger a load")
+                .tag("query.type", queryType.name())
+                .tag("layer", layer.name())
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordResultCacheLookup(QueryType queryType, boolean hit) {
+        Counter.builder("sparql.result.cache.lookups")
+                .tag("query.type", queryType.name())
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordBlobFetch(ModelLayer layer, long nanos) {
+        timer("sparql.load.blob.fetch", "Reading a single rdf blob from the database", "layer", layer.name())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // for the base layer the blob is streamed into the parser, so this includes fetching it
+    public void recordParse(ModelLayer layer, long nanos) {
+        timer("sparql.load.parse", "Parsing the turtle of a layer", "layer", layer.name())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLayerLoad(ModelLayer layer, long nanos) {
+        timer("sparql.load.layer", "Cold load of a layer, from snapshot, tdb2 or the database", "layer", layer.name())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUnionBuild(QueryType queryType, long nanos) {
+        timer("sparql.view.union", "Composing the union model of a query view", "query.type", queryType.name())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLayerRefresh(ModelLayer layer, String outcome) {
+        Counter.builder("sparql.store.refreshes")
+                .description("Checks of cached analysis layers for added analysis rows")
+                .tag("layer", layer.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // evaluation until the first solution is available
+    public void recordExecution(QueryType queryType, String outcome, long nanos) {
+        Timer.builder("sparql.query.execution")
+                .description("Evaluating a query until its first solution is available")
+                .tag("query.type", queryType.name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // pulling the remaining solutions and writing them to the client
+    public void recordSerialization(QueryType queryType, long nanos) {
+        timer("sparql.query.serialization", "Writing all solutions of a query to the client", "query.type", queryType.name())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String description, String tagKey, String tagValue) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(tagKey, tagValue)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,12 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// The result format is negotiated once the query is parsed, construct and describe queries produce rdf.
+// nextCursorId is only set for a page of a cursor with further pages.
+public record QueryResponse(ResultFormat resultFormat, StreamingResponseBody body, String nextCursorId) {
+
+    public QueryResponse(ResultFormat resultFormat, StreamingResponseBody body) {
+        this(resultFormat, body, null);
+    }
+}
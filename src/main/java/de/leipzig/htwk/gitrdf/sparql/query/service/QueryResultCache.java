@@ -0,0 +1,162 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+
+@Component
+@Slf4j
+public class QueryResultCache {
+
+    public record Key(long orderId, QueryType queryType, String normalizedQuery, ResultFormat resultFormat) {
+    }
+
+    // beyond that many orders with a generation of their own, the ones without cached results are pruned
+    private static final int MAX_GENERATIONS = 1024;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+
+    // access ordered, so iteration starts with the least recently used result
+    private final LinkedHashMap<Key, byte[]> results = new LinkedHashMap<>(16, 0.75f, true);
+    // set to a new generation on every invalidation of an order, results computed against an older generation
+    // are not stored. Orders without an entry share the base generation.
+    private final Map<Long, Long> generations = new HashMap<>();
+    private long baseGeneration;
+    private long lastGeneration;
+    private long totalBytes;
+
+    public QueryResultCache(TripleStoreProperties properties) {
+        this.enabled = properties.getResultCache().isEnabled();
+        this.maxBytes = properties.getResultCache().getMaxSize().toBytes();
+        this.maxEntryBytes = (int) Math.min(properties.getResultCache().getMaxEntrySize().toBytes(), Integer.MAX_VALUE - 8);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized Optional<byte[]> get(Key key) {
+        return Optional.ofNullable(results.get(key));
+    }
+
+    public synchronized long getGeneration(long orderId) {
+        return generations.getOrDefault(orderId, baseGeneration);
+    }
+
+    public synchronized void put(Key key, long generation, byte[] result) {
+        if (!enabled || result.length > maxEntryBytes || generation != getGeneration(key.orderId())) {
+            return;
+        }
+
+        byte[] previous = results.put(key, result);
+        totalBytes += result.length - (previous == null ? 0 : previous.length);
+
+        Iterator<byte[]> leastRecentlyUsed = results.values().iterator();
+        while (totalBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            totalBytes -= leastRecentlyUsed.next().length;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    // Streams to the target and keeps a copy as long as the result stays below the max entry size.
+    public CapturingOutputStream capture(OutputStream target) {
+        return new CapturingOutputStream(target, enabled ? maxEntryBytes : 0);
+    }
+
+    @EventListener
+    public synchronized void onStoreEntryRemoved(StoreEntryRemovedEvent event) {
+        generations.put(event.orderId(), ++lastGeneration);
+
+        int invalidated = 0;
+        Iterator<Map.Entry<Key, byte[]>> entries = results.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Key, byte[]> entry = entries.next();
+            Key key = entry.getKey();
+
+            if (key.orderId() == event.orderId() && key.queryType().getLayers().contains(event.layer())) {
+                totalBytes -= entry.getValue().length;
+                entries.remove();
+                invalidated++;
+            }
+        }
+
+        if (invalidated > 0) {
+            log.debug("Invalidated {} cached query results of order {} after its {} layer was removed",
+                    invalidated, event.orderId(), event.layer());
+        }
+
+        pruneGenerations();
+    }
+
+    // A pruned order falls back to the base generation, which moves on, so results computed against the
+    // pruned generation still don't match. Results of other orders computed meanwhile are dropped as well.
+    private void pruneGenerations() {
+        if (generations.size() <= MAX_GENERATIONS) {
+            return;
+        }
+
+        Set<Long> cachedOrders = new HashSet<>();
+        results.keySet().forEach(key -> cachedOrders.add(key.orderId()));
+        generations.keySet().retainAll(cachedOrders);
+        baseGeneration = ++lastGeneration;
+    }
+
+    public static class CapturingOutputStream extends FilterOutputStream {
+
+        private final int maxCapturedBytes;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream target, int maxCapturedBytes) {
+            super(target);
+            this.maxCapturedBytes = maxCapturedBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (captured == null) {
+                return;
+            }
+
+            if (captured.size() + len > maxCapturedBytes) {
+                captured = null;
+                return;
+            }
+
+            captured.write(b, off, len);
+        }
+
+        // empty if the result exceeded the max entry size
+        public Optional<byte[]> getCaptured() {
+            return Optional.ofNullable(captured).map(ByteArrayOutputStream::toByteArray);
+        }
+
+    }
+
+}
@@ -0,0 +1,341 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.TooManyRequestsException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// Admission control for query executions. At most maxConcurrent queries run at once and a single order
+// can occupy at most maxConcurrentPerOrder of those slots. Waiting queries are queued per order and
+// admitted round robin across orders, so a burst against one large order does not starve the others.
+// A query writing to a slow client is mostly waiting for the socket, it hands its slot over to the queue
+// and continues in a separate budget of maxStreaming slots.
+@Component
+@Slf4j
+public class QueryScheduler {
+
+    private final int maxConcurrent;
+    private final int maxConcurrentPerOrder;
+    private final int maxQueued;
+    private final Duration maxQueueWait;
+    private final Duration retryAfter;
+    private final int maxStreaming;
+    private final long slowWriteThresholdNanos;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Integer> runningPerOrder = new HashMap<>();
+    // insertion order is the round robin order, an order moves to the end after one of its queries was admitted
+    private final LinkedHashMap<Long, ArrayDeque<Waiter>> waitingPerOrder = new LinkedHashMap<>();
+    private int running;
+    private int queued;
+    private int streaming;
+
+    public QueryScheduler(QueryProperties properties, MeterRegistry meterRegistry) {
+        QueryProperties.Scheduler scheduler = properties.getScheduler();
+
+        this.maxConcurrent = Math.max(1, scheduler.resolveMaxConcurrent());
+        this.maxConcurrentPerOrder = Math.max(1, Math.min(scheduler.resolveMaxConcurrentPerOrder(), maxConcurrent));
+        this.maxQueued = Math.max(0, scheduler.getMaxQueued());
+        this.maxQueueWait = scheduler.getMaxQueueWait();
+        this.retryAfter = scheduler.getRetryAfter();
+        this.maxStreaming = Math.max(0, scheduler.getMaxStreaming());
+        this.slowWriteThresholdNanos = scheduler.getSlowWriteThreshold().toNanos();
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("sparql.query.running", this, QueryScheduler::getRunningCount)
+                .description("Queries currently executing")
+                .register(meterRegistry);
+        Gauge.builder("sparql.query.streaming", this, QueryScheduler::getStreamingCount)
+                .description("Queries writing their result to a slow client")
+                .register(meterRegistry);
+        Gauge.builder("sparql.query.queued", this, QueryScheduler::getQueuedCount)
+                .description("Queries waiting for an execution slot")
+                .register(meterRegistry);
+
+        log.info("Query scheduler allows {} concurrent queries, {} per order, with {} queued queries",
+                maxConcurrent, maxConcurrentPerOrder, maxQueued);
+    }
+
+    // Blocks until the query may run, throws a TooManyRequestsException if the queue is full
+    // or the query waited longer than maxQueueWait. The permit has to be closed once the query finished.
+    public Permit acquire(long orderId) throws InterruptedIOException {
+        lock.lock();
+        try {
+            if (queued == 0 && canRun(orderId)) {
+                start(orderId);
+                return new Permit(orderId);
+            }
+
+            if (queued >= maxQueued) {
+                log.info("Rejecting query on order {}, {} queries are running and {} are queued", orderId, running, queued);
+                meterRegistry.counter("sparql.query.rejected", "cause", "queue-full").increment();
+                throw TooManyRequestsException.queryQueueFull(retryAfter);
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            waitingPerOrder.computeIfAbsent(orderId, id -> new ArrayDeque<>()).addLast(waiter);
+            queued++;
+
+            // a slot of another order may be free even though older queries wait
+            dispatch();
+
+            long remainingNanos = maxQueueWait.toNanos();
+            try {
+                while (!waiter.admitted && remainingNanos > 0) {
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon(orderId, waiter);
+                throw new InterruptedIOException("Interrupted while waiting for a query slot");
+            }
+
+            if (!waiter.admitted) {
+                abandon(orderId, waiter);
+                log.info("Rejecting query on order {} after waiting {} for a query slot", orderId, maxQueueWait);
+                meterRegistry.counter("sparql.query.rejected", "cause", "queue-timeout").increment();
+                throw TooManyRequestsException.queryQueueFull(retryAfter);
+            }
+
+            return new Permit(orderId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getStreamingCount() {
+        lock.lock();
+        try {
+            return streaming;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long orderId) {
+        lock.lock();
+        try {
+            running--;
+            runningPerOrder.computeIfPresent(orderId, (id, count) -> count > 1 ? count - 1 : null);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean moveToStreaming(long orderId) {
+        lock.lock();
+        try {
+            if (streaming >= maxStreaming) {
+                return false;
+            }
+
+            streaming++;
+            release(orderId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseStreaming() {
+        lock.lock();
+        try {
+            streaming--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void abandon(long orderId, Waiter waiter) {
+        if (waiter.admitted) {
+            // admitted right before giving up, hand the slot on to the next query
+            release(orderId);
+            return;
+        }
+
+        ArrayDeque<Waiter> waiters = waitingPerOrder.get(orderId);
+        if (waiters != null && waiters.remove(waiter)) {
+            queued--;
+            if (waiters.isEmpty()) {
+                waitingPerOrder.remove(orderId);
+            }
+        }
+    }
+
+    private void dispatch() {
+        boolean admitted = true;
+
+        while (admitted && running < maxConcurrent && !waitingPerOrder.isEmpty()) {
+            admitted = false;
+
+            Iterator<Map.Entry<Long, ArrayDeque<Waiter>>> orders = waitingPerOrder.entrySet().iterator();
+            while (orders.hasNext()) {
+                Map.Entry<Long, ArrayDeque<Waiter>> order = orders.next();
+                long orderId = order.getKey();
+
+                if (!canRun(orderId)) {
+                    continue;
+                }
+
+                Waiter waiter = order.getValue().pollFirst();
+                orders.remove();
+                queued--;
+
+                start(orderId);
+                waiter.admitted = true;
+                waiter.condition.signal();
+
+                if (!order.getValue().isEmpty()) {
+                    waitingPerOrder.put(orderId, order.getValue());
+                }
+
+                admitted = true;
+                break;
+            }
+        }
+    }
+
+    private boolean canRun(long orderId) {
+        return running < maxConcurrent && runningPerOrder.getOrDefault(orderId, 0) < maxConcurrentPerOrder;
+    }
+
+    private void start(long orderId) {
+        running++;
+        runningPerOrder.merge(orderId, 1, Integer::sum);
+    }
+
+    private static class Waiter {
+
+        private final Condition condition;
+        private boolean admitted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    public class Permit implements AutoCloseable {
+
+        private final long orderId;
+        // checked on every write of the response, a monitor would pin the virtual thread writing it
+        private final ReentrantLock permitLock = new ReentrantLock();
+        private boolean released;
+        private boolean streaming;
+
+        private Permit(long orderId) {
+            this.orderId = orderId;
+        }
+
+        // The result has to be written through the returned stream, a write blocking longer than the
+        // slow write threshold moves the query from its execution slot to a streaming slot.
+        public OutputStream watchClient(OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+
+                @Override
+                public void write(int b) throws IOException {
+                    long writeStart = System.nanoTime();
+                    out.write(b);
+                    checkSlowWrite(writeStart);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    long writeStart = System.nanoTime();
+                    out.write(b, off, len);
+                    checkSlowWrite(writeStart);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    long writeStart = System.nanoTime();
+                    out.flush();
+                    checkSlowWrite(writeStart);
+                }
+            };
+        }
+
+        public boolean isStreaming() {
+            permitLock.lock();
+            try {
+                return streaming;
+            } finally {
+                permitLock.unlock();
+            }
+        }
+
+        private void checkSlowWrite(long writeStart) {
+            if (System.nanoTime() - writeStart < slowWriteThresholdNanos) {
+                return;
+            }
+
+            permitLock.lock();
+            try {
+                if (released || streaming) {
+                    return;
+                }
+
+                streaming = moveToStreaming(orderId);
+                if (streaming) {
+                    log.debug("Query on order {} writes to a slow client, its execution slot is handed on", orderId);
+                }
+            } finally {
+                permitLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            permitLock.lock();
+            try {
+                if (!released) {
+                    released = true;
+                    if (streaming) {
+                        releaseStreaming();
+                    } else {
+                        release(orderId);
+                    }
+                }
+            } finally {
+                permitLock.unlock();
+            }
+        }
+    }
+
+}
@@ -1,19 +1,28 @@
 package de.leipzig.htwk.gitrdf.sparql.query.service;
 
+import java.util.List;
+
 public enum QueryType {
-    BASIC("query"),
-    COMBINED("query-combined"), 
-    ANALYSIS("query-analysis"),
-    EXPERT("query-expert"),
-    ALL("query-all");
+    BASIC("query", ModelLayer.BASE, ModelLayer.STATISTIC),
+    COMBINED("query-combined", ModelLayer.BASE, ModelLayer.RATING, ModelLayer.STATISTIC), 
+    ANALYSIS("query-analysis", ModelLayer.RATING, ModelLayer.STATISTIC),
+    EXPERT("query-expert", ModelLayer.BASE, ModelLayer.EXPERT),
+    ALL("query-all", ModelLayer.BASE, ModelLayer.RATING, ModelLayer.STATISTIC, ModelLayer.EXPERT);
     
     private final String endpoint;
+    private final List<ModelLayer> layers;
     
-    QueryType(String endpoint) {
+    QueryType(String endpoint, ModelLayer... layers) {
         this.endpoint = endpoint;
+        this.layers = List.of(layers);
     }
     
     public String getEndpoint() {
         return endpoint;
     }
-}
\ No newline at end of file
+    
+    // the cached layers this view is composed of, in union order
+    public List<ModelLayer> getLayers() {
+        return layers;
+    }
+}
@@ -0,0 +1,138 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.compose.MultiUnion;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+// The model a query of a specific QueryType runs against: the union of the cached layers of one order.
+@Getter
+public class QueryView {
+
+    private static final String ORDER_GRAPH_PREFIX = "urn:gitrdf:order:";
+
+    private final long orderId;
+    private final QueryType queryType;
+    private final List<LayerModel> layerModels;
+    private final List<Dataset> tdbDatasets;
+
+    // composed once for in-memory layers, tdb2 backed layers can only be composed inside a read transaction
+    private final Model inMemoryModel;
+
+    // releases the reference of TdbLayerStore.retain, runs once
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Runnable> release = new AtomicReference<>();
+
+    private QueryView(long orderId, QueryType queryType, List<LayerModel> layerModels, Model materializedModel) {
+        this.orderId = orderId;
+        this.queryType = queryType;
+        this.layerModels = List.copyOf(layerModels);
+        this.tdbDatasets = layerModels.stream()
+                .filter(LayerModel::isTdbBacked)
+                .map(LayerModel::dataset)
+                .distinct()
+                .toList();
+
+        if (materializedModel != null) {
+            this.inMemoryModel = materializedModel;
+        } else {
+            this.inMemoryModel = tdbDatasets.isEmpty() ? composeUnion(layerModels) : null;
+        }
+    }
+
+    public static QueryView of(long orderId, QueryType queryType, List<LayerModel> layerModels) {
+        return new QueryView(orderId, queryType, layerModels, null);
+    }
+
+    // The layers merged into one graph, so every triple pattern hits a single index instead of fanning out.
+    public static QueryView materialized(long orderId, QueryType queryType, List<LayerModel> layerModels,
+            Model materializedModel) {
+        return new QueryView(orderId, queryType, layerModels, materializedModel);
+    }
+
+    // Only in-memory layers can be materialized, tdb2 backed ones stay in their database.
+    public static boolean isMaterializable(List<LayerModel> layerModels) {
+        return layerModels.size() > 1 && layerModels.stream().noneMatch(LayerModel::isTdbBacked);
+    }
+
+    // Must be called between beginRead and endRead if the view contains tdb2 backed layers.
+    public Model getModel() {
+        return inMemoryModel != null ? inMemoryModel : composeUnion(layerModels);
+    }
+
+    // Has to be called on the thread that reads the model, tdb2 transactions are bound to their thread.
+    public void beginRead() {
+        for (Dataset dataset : tdbDatasets) {
+            dataset.begin(ReadWrite.READ);
+        }
+    }
+
+    // Releases the view, it is read only once.
+    public void endRead() {
+        try {
+            for (Dataset dataset : tdbDatasets) {
+                dataset.end();
+            }
+        } finally {
+            release();
+        }
+    }
+
+    // For views that are never read, e.g. of rejected queries or cached results. Does nothing once released.
+    public void release() {
+        Runnable releaseReference = release.getAndSet(null);
+        if (releaseReference != null) {
+            releaseReference.run();
+        }
+    }
+
+    void onRelease(Runnable releaseReference) {
+        release.set(releaseReference);
+    }
+
+    public static String graphNameOf(long orderId) {
+        return ORDER_GRAPH_PREFIX + orderId;
+    }
+
+    // Every view as the named graph of its order, the default graph is the union of all of them.
+    // The graphs are linked into the dataset, not copied. Must be called between beginRead and endRead of all views.
+    public static Dataset composeDataset(List<QueryView> queryViews) {
+        DatasetGraph datasetGraph = DatasetGraphFactory.createGeneral();
+        MultiUnion defaultGraph = new MultiUnion();
+
+        for (QueryView queryView : queryViews) {
+            Graph viewGraph = queryView.getModel().getGraph();
+            datasetGraph.addGraph(NodeFactory.createURI(graphNameOf(queryView.getOrderId())), viewGraph);
+            defaultGraph.addGraph(viewGraph);
+        }
+
+        datasetGraph.setDefaultGraph(defaultGraph);
+
+        return DatasetFactory.wrap(datasetGraph);
+    }
+
+    private static Model composeUnion(List<LayerModel> layerModels) {
+        Model viewModel = null;
+
+        for (LayerModel layerModel : layerModels) {
+            viewModel = viewModel == null
+                    ? layerModel.model()
+                    : ModelFactory.createUnion(viewModel, layerModel.model());
+        }
+
+        return viewModel;
+    }
+
+}
@@ -0,0 +1,131 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.shared.PrefixMapping;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+// The serializations a client can ask for with the Accept header, result set formats for select and ask queries,
+// rdf formats for construct and describe queries. All of them are written while the solutions or triples are pulled,
+// the compact ones mainly save encoding time and bandwidth on large results.
+public enum ResultFormat {
+    JSON(ResultFormat.JSON_MEDIA_TYPE, ResultSetLang.SPARQLResultSetJSON),
+    XML(ResultFormat.XML_MEDIA_TYPE, ResultSetLang.SPARQLResultSetXML),
+    CSV(ResultFormat.CSV_MEDIA_TYPE, ResultSetLang.SPARQLResultSetCSV),
+    TSV(ResultFormat.TSV_MEDIA_TYPE, ResultSetLang.SPARQLResultSetTSV),
+    THRIFT(ResultFormat.THRIFT_MEDIA_TYPE, ResultSetLang.SPARQLResultSetThrift),
+    TURTLE(ResultFormat.TURTLE_MEDIA_TYPE, RDFFormat.TURTLE_BLOCKS),
+    N_TRIPLES(ResultFormat.N_TRIPLES_MEDIA_TYPE, RDFFormat.NTRIPLES_UTF8),
+    RDF_THRIFT(ResultFormat.RDF_THRIFT_MEDIA_TYPE, RDFFormat.RDF_THRIFT);
+
+    public static final String JSON_MEDIA_TYPE = "application/sparql-results+json";
+    public static final String XML_MEDIA_TYPE = "application/sparql-results+xml";
+    public static final String CSV_MEDIA_TYPE = "text/csv";
+    public static final String TSV_MEDIA_TYPE = "text/tab-separated-values";
+    public static final String THRIFT_MEDIA_TYPE = "application/sparql-results+thrift";
+    public static final String TURTLE_MEDIA_TYPE = "text/turtle";
+    public static final String N_TRIPLES_MEDIA_TYPE = "application/n-triples";
+    public static final String RDF_THRIFT_MEDIA_TYPE = "application/rdf+thrift";
+
+    private final MediaType mediaType;
+    // exactly one of them is set
+    private final Lang resultSetLang;
+    private final RDFFormat rdfFormat;
+
+    ResultFormat(String mediaType, Lang resultSetLang) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.resultSetLang = resultSetLang;
+        this.rdfFormat = null;
+    }
+
+    ResultFormat(String mediaType, RDFFormat rdfFormat) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.resultSetLang = null;
+        this.rdfFormat = rdfFormat;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isGraphFormat() {
+        return rdfFormat != null;
+    }
+
+    // The most specific and preferred accepted type of the kind the query produces wins. Json or turtle
+    // if the client accepts anything, sent no Accept header or accepts none of the formats of that kind.
+    public static ResultFormat fromAcceptHeader(String acceptHeader, boolean graphResult) {
+        ResultFormat defaultFormat = graphResult ? TURTLE : JSON;
+
+        if (StringUtils.isBlank(acceptHeader)) {
+            return defaultFormat;
+        }
+
+        List<MediaType> acceptedMediaTypes = MediaType.parseMediaTypes(acceptHeader);
+        MimeTypeUtils.sortBySpecificity(acceptedMediaTypes);
+        // stable, so equally preferred types stay ordered by specificity
+        acceptedMediaTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+
+        for (MediaType acceptedMediaType : acceptedMediaTypes) {
+            if (acceptedMediaType.getQualityValue() == 0) {
+                continue;
+            }
+
+            for (ResultFormat resultFormat : values()) {
+                if (resultFormat.isGraphFormat() == graphResult && acceptedMediaType.isCompatibleWith(resultFormat.mediaType)) {
+                    return resultFormat;
+                }
+            }
+        }
+
+        return defaultFormat;
+    }
+
+    // sparql results in thrift have no encoding for a boolean result
+    public boolean supportsAskResults() {
+        return this != THRIFT;
+    }
+
+    public void writeSelectResult(OutputStream outputStream, ResultSet resultSet) {
+        ResultSetMgr.write(outputStream, resultSet, resultSetLang);
+    }
+
+    // Written triple by triple, turtle in blocks of triples sharing a subject. Like jena's construct iterator,
+    // this doesn't remove duplicate triples a construct template produces for different solutions.
+    public void writeGraphResult(OutputStream outputStream, Iterator<Triple> triples, PrefixMapping prefixMapping) {
+        StreamRDF rdfStream = StreamRDFWriter.getWriterStream(outputStream, rdfFormat);
+
+        rdfStream.start();
+        prefixMapping.getNsPrefixMap().forEach(rdfStream::prefix);
+        while (triples.hasNext()) {
+            rdfStream.triple(triples.next());
+        }
+        rdfStream.finish();
+    }
+
+    // json keeps the plain yes/no answer ask queries always returned
+    public void writeAskResult(OutputStream outputStream, boolean askResult) throws IOException {
+        switch (this) {
+            case XML -> ResultSetFormatter.outputAsXML(outputStream, askResult);
+            case CSV -> ResultSetFormatter.outputAsCSV(outputStream, askResult);
+            case TSV -> ResultSetFormatter.outputAsTSV(outputStream, askResult);
+            default -> outputStream.write((askResult ? "yes" : "no").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hands the result an evaluation thread writes over to the thread writing the response, in chunks.
+// The evaluation blocks once maxChunks chunks wait for a slow client, the response thread waits while
+// the evaluation computes. Locks instead of monitors, the response thread is a virtual thread.
+class ResultPipe {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final int maxChunks;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition chunkAvailable = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+    // the evaluation wrote its last chunk
+    private boolean finished;
+    // the response thread stopped reading, the client is gone
+    private boolean abandoned;
+    // time the evaluation waited for the client to take the result
+    private long blockedNanos;
+    private long blockedSince;
+
+    private record Chunk(byte[] bytes, int length, boolean flush) {
+    }
+
+    ResultPipe(int maxChunks) {
+        this.maxChunks = Math.max(1, maxChunks);
+    }
+
+    // Written by the evaluation thread, closing it ends the result.
+    OutputStream sink() {
+        return new OutputStream() {
+
+            private byte[] buffer = new byte[CHUNK_SIZE];
+            private int count;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (count == buffer.length) {
+                    handOver(false);
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    if (count == buffer.length) {
+                        handOver(false);
+                    }
+                    int copied = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, copied);
+                    count += copied;
+                    off += copied;
+                    len -= copied;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                handOver(true);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+
+                try {
+                    if (count > 0) {
+                        handOver(false);
+                    }
+                } finally {
+                    finish();
+                }
+            }
+
+            private void handOver(boolean flush) throws IOException {
+                put(new Chunk(buffer, count, flush));
+                buffer = new byte[CHUNK_SIZE];
+                count = 0;
+            }
+        };
+    }
+
+    // Writes the chunks to the client until the evaluation closed the sink. A failed write abandons the pipe,
+    // the evaluation fails on its next chunk then.
+    void drainTo(OutputStream outputStream) throws IOException {
+        try {
+            Chunk chunk;
+            while ((chunk = take()) != null) {
+                outputStream.write(chunk.bytes(), 0, chunk.length());
+                if (chunk.flush()) {
+                    outputStream.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            abandon();
+            throw e;
+        }
+    }
+
+    // Includes a wait in progress.
+    long getBlockedNanos() {
+        lock.lock();
+        try {
+            return blockedSince != 0 ? blockedNanos + (System.nanoTime() - blockedSince) : blockedNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void abandon() {
+        lock.lock();
+        try {
+            abandoned = true;
+            chunks.clear();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Chunk chunk) throws IOException {
+        lock.lock();
+        try {
+            if (chunks.size() >= maxChunks && !abandoned) {
+                blockedSince = System.nanoTime();
+                try {
+                    while (chunks.size() >= maxChunks && !abandoned) {
+                        spaceAvailable.await();
+                    }
+                } finally {
+                    blockedNanos += System.nanoTime() - blockedSince;
+                    blockedSince = 0;
+                }
+            }
+            if (abandoned) {
+                throw new IOException("The response was abandoned, the client is gone");
+            }
+
+            chunks.addLast(chunk);
+            chunkAvailable.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the client");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null once the evaluation finished and every chunk was taken
+    private Chunk take() throws IOException {
+        lock.lock();
+        try {
+            while (chunks.isEmpty() && !finished) {
+                chunkAvailable.await();
+            }
+
+            Chunk chunk = chunks.pollFirst();
+            spaceAvailable.signal();
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the query result");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            chunkAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import org.apache.jena.rdf.model.Model;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -11,29 +12,42 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 @RequiredArgsConstructor
 public class StoreEntry {
     private final long orderId;
-    private final QueryType queryType;
-    private final Model model;
+    private final ModelLayer layer;
+    private final LayerModel layerModel;
+    private final long estimatedBytes;
     private final LocalDateTime createdAt;
     private volatile LocalDateTime lastAccessedAt;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     
-    public StoreEntry(long orderId, QueryType queryType, Model model) {
+    public StoreEntry(long orderId, ModelLayer layer, LayerModel layerModel, long estimatedBytes) {
         this.orderId = orderId;
-        this.queryType = queryType;
-        this.model = model;
+        this.layer = layer;
+        this.layerModel = layerModel;
+        this.estimatedBytes = estimatedBytes;
         this.createdAt = LocalDateTime.now();
         this.lastAccessedAt = LocalDateTime.now();
     }
     
+    // a refreshed layer keeps its access time, the refresh is no use of the layer
+    public StoreEntry withLayerModel(LayerModel layerModel, long estimatedBytes) {
+        StoreEntry entry = new StoreEntry(orderId, layer, layerModel, estimatedBytes);
+        entry.lastAccessedAt = lastAccessedAt;
+        return entry;
+    }
+    
+    public Model getModel() {
+        return layerModel.model();
+    }
+    
     public void updateLastAccessed() {
         this.lastAccessedAt = LocalDateTime.now();
     }
     
-    public boolean isExpired(int timeoutMinutes) {
-        return LocalDateTime.now().isAfter(lastAccessedAt.plusMinutes(timeoutMinutes));
+    public boolean isExpired(Duration ttl) {
+        return LocalDateTime.now().isAfter(lastAccessedAt.plus(ttl));
     }
     
     public String getStoreKey() {
-        return orderId + ":" + queryType.name();
+        return orderId + ":" + layer.name();
     }
 }
\ No newline at end of file
@@ -0,0 +1,5 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+// Published by the TripleStoreManager whenever a cached layer is evicted, expires or is replaced by a reload.
+public record StoreEntryRemovedEvent(long orderId, ModelLayer layer) {
+}
@@ -0,0 +1,239 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.sys.StoreConnection;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Disk backed storage for orders too large for the heap. Every order gets its own tdb2 database,
+// each layer is a named graph in it and is only (re)loaded when its fingerprint changed.
+// A database is released once no layer of its order is cached or read by a query anymore, its files stay for a later load.
+@Component
+@Slf4j
+public class TdbLayerStore {
+
+    private static final String LAYER_GRAPH_PREFIX = "urn:gitrdf:layer:";
+    private static final String META_GRAPH = "urn:gitrdf:meta";
+    private static final Property FINGERPRINT = ResourceFactory.createProperty("urn:gitrdf:fingerprint");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long thresholdBytes;
+    private final Duration releaseDelay;
+    private final TripleStoreManager tripleStoreManager;
+    private final Map<Long, Dataset> datasets = new ConcurrentHashMap<>();
+    // orders whose layers are loaded right now, their database must not be released in between
+    private final Map<Long, Integer> activeLoads = new ConcurrentHashMap<>();
+    // query views composed of layers of the order, counted from their composition until their endRead
+    private final Map<Long, Integer> viewReferences = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService releaser = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "tdb2-release"));
+
+    public TdbLayerStore(TripleStoreProperties properties, TripleStoreManager tripleStoreManager) {
+        this.enabled = properties.getTdb().isEnabled();
+        this.directory = properties.getTdb().getDirectory();
+        this.thresholdBytes = properties.getTdb().getThreshold().toBytes();
+        this.releaseDelay = properties.getTdb().getReleaseDelay();
+        this.tripleStoreManager = tripleStoreManager;
+
+        if (enabled) {
+            log.info("Orders with a base rdf file of at least {} MB are stored in tdb2 databases in '{}'",
+                    properties.getTdb().getThreshold().toMegabytes(), directory);
+        }
+    }
+
+    public boolean isResponsibleFor(long baseRdfBytes) {
+        return enabled && baseRdfBytes >= thresholdBytes;
+    }
+
+    public LayerModel getOrLoad(long orderId, ModelLayer layer, String fingerprint, GraphLoader graphLoader)
+            throws SQLException, IOException {
+
+        Dataset dataset = connect(orderId);
+        try {
+            String graphName = LAYER_GRAPH_PREFIX + layer.name();
+
+            if (isLoaded(dataset, graphName, fingerprint)) {
+                log.debug("Using tdb2 stored {} layer for order {}", layer, orderId);
+            } else {
+                bulkLoad(dataset, graphName, graphLoader);
+                log.info("Bulk loaded {} layer for order {} into tdb2 database", layer, orderId);
+            }
+
+            return LayerModel.tdbBacked(dataset.getNamedModel(graphName), dataset);
+        } finally {
+            disconnect(orderId);
+        }
+    }
+
+    @EventListener
+    public void onStoreEntryRemoved(StoreEntryRemovedEvent event) {
+        if (datasets.containsKey(event.orderId())) {
+            releaser.schedule(() -> releaseIfUnused(event.orderId()), releaseDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Counts a composed view against the release of the database of its order until the view is released, at its
+    // endRead or by QueryView.release() if it is never read. False if the database was released since the layers
+    // of the view were looked up, a view composed of the reloaded layers has to be retained instead.
+    public synchronized boolean retain(QueryView queryView) {
+        if (queryView.getTdbDatasets().isEmpty()) {
+            return true;
+        }
+
+        long orderId = queryView.getOrderId();
+        for (Dataset dataset : queryView.getTdbDatasets()) {
+            if (datasets.get(orderId) != dataset) {
+                return false;
+            }
+        }
+
+        viewReferences.merge(orderId, 1, Integer::sum);
+        queryView.onRelease(() -> releaseView(orderId));
+        return true;
+    }
+
+    private synchronized void releaseView(long orderId) {
+        Integer references = viewReferences.computeIfPresent(orderId, (id, count) -> count > 1 ? count - 1 : null);
+
+        // the layers of the order may have been removed while the view was read
+        if (references == null && datasets.containsKey(orderId)) {
+            releaser.schedule(() -> releaseIfUnused(orderId), releaseDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized Dataset connect(long orderId) {
+        activeLoads.merge(orderId, 1, Integer::sum);
+        return datasets.computeIfAbsent(orderId, id -> TDB2Factory.connectDataset(getLocation(id)));
+    }
+
+    private synchronized void disconnect(long orderId) {
+        activeLoads.computeIfPresent(orderId, (id, loads) -> loads > 1 ? loads - 1 : null);
+    }
+
+    // Runs after the release delay, a layer of the order may have been loaded again in the meantime.
+    // A database still read by query views is checked again once the last of them is released,
+    // other open transactions are waited for by checking again after another delay.
+    private synchronized void releaseIfUnused(long orderId) {
+        Dataset dataset = datasets.get(orderId);
+        if (dataset == null || activeLoads.containsKey(orderId) || viewReferences.containsKey(orderId)
+                || tripleStoreManager.isOrderInUse(orderId)) {
+            return;
+        }
+
+        if (TDBInternal.getDatasetGraphTDB(dataset).getTxnSystem().getTxnMgr().countActive() > 0) {
+            releaser.schedule(() -> releaseIfUnused(orderId), releaseDelay.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        datasets.remove(orderId);
+        StoreConnection.release(Location.create(getLocation(orderId)));
+
+        log.info("Released tdb2 database of order {}, none of its layers is cached or read anymore", orderId);
+    }
+
+    // Adds the triples of new analysis rows to a loaded layer. Readers keep seeing the previous state until the commit.
+    public void append(long orderId, ModelLayer layer, String fingerprint, Graph addedTriples) {
+        Dataset dataset = datasets.get(orderId);
+        if (dataset == null) {
+            throw new IllegalStateException("No tdb2 database is connected for order " + orderId);
+        }
+
+        String graphName = LAYER_GRAPH_PREFIX + layer.name();
+
+        dataset.begin(ReadWrite.WRITE);
+        try {
+            GraphUtil.addInto(dataset.getNamedModel(graphName).getGraph(), addedTriples);
+            writeFingerprint(dataset, graphName, fingerprint);
+
+            dataset.commit();
+        } catch (Throwable e) {
+            dataset.abort();
+            throw e;
+        } finally {
+            dataset.end();
+        }
+
+        log.info("Appended {} triples to {} layer of order {} in tdb2 database", addedTriples.size(), layer, orderId);
+    }
+
+    private boolean isLoaded(Dataset dataset, String graphName, String fingerprint) {
+        dataset.begin(ReadWrite.READ);
+        try {
+            Statement fingerprintStatement = dataset.getNamedModel(META_GRAPH)
+                    .getProperty(ResourceFactory.createResource(graphName), FINGERPRINT);
+
+            return fingerprintStatement != null && fingerprintStatement.getString().equals(fingerprint);
+        } finally {
+            dataset.end();
+        }
+    }
+
+    private void bulkLoad(Dataset dataset, String graphName, GraphLoader graphLoader)
+            throws SQLException, IOException {
+
+        dataset.begin(ReadWrite.WRITE);
+        try {
+            dataset.removeNamedModel(graphName);
+            String loadedFingerprint = graphLoader.loadInto(dataset.getNamedModel(graphName).getGraph());
+            writeFingerprint(dataset, graphName, loadedFingerprint);
+
+            dataset.commit();
+        } catch (Throwable e) {
+            dataset.abort();
+            throw e;
+        } finally {
+            dataset.end();
+        }
+    }
+
+    // Must be called inside a write transaction
+    private void writeFingerprint(Dataset dataset, String graphName, String fingerprint) {
+        Model metaModel = dataset.getNamedModel(META_GRAPH);
+        Resource layerGraph = metaModel.createResource(graphName);
+        metaModel.removeAll(layerGraph, FINGERPRINT, null);
+        metaModel.add(layerGraph, FINGERPRINT, fingerprint);
+    }
+
+    private String getLocation(long orderId) {
+        return directory.resolve(Long.toString(orderId)).toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        releaser.shutdownNow();
+
+        for (Long orderId : datasets.keySet()) {
+            StoreConnection.release(Location.create(getLocation(orderId)));
+        }
+
+        datasets.clear();
+    }
+
+}
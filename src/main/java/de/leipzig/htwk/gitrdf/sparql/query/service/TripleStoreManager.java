@@ -1,45 +1,97 @@
 package de.leipzig.htwk.gitrdf.sparql.query.service;
 
+import java.io.IOException;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
-import org.apache.jena.rdf.model.Model;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.FutureUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
 public class TripleStoreManager {
     
-    private static final int MAX_STORES = 8;
-    private static final int TIMEOUT_MINUTES = 10;
+    private final TripleStoreProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final LayerGraphFactory layerGraphFactory;
+    private final long heapBudgetBytes;
+    private final long tdbDatasetOverheadBytes;
+    private long totalEstimatedBytes;
+    // part of totalEstimatedBytes charged for the connected tdb2 databases of cached layers
+    private long tdbDatasetBytes;
+    // part of totalEstimatedBytes charged for materialized views
+    private long viewEstimatedBytes;
     
     private final Map<String, StoreEntry> stores = new ConcurrentHashMap<>();
+    // Materialized views are charged like layers and evicted under the same lru,
+    // a view is removed together with the first of its layers.
+    private final Map<String, ViewEntry> views = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<LayerModel>> pendingLoads = new ConcurrentHashMap<>();
     private final ReentrantReadWriteLock globalLock = new ReentrantReadWriteLock();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     
-    public TripleStoreManager() {
+    public TripleStoreManager(TripleStoreProperties properties, ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry, LayerGraphFactory layerGraphFactory) {
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.layerGraphFactory = layerGraphFactory;
+        this.heapBudgetBytes = properties.resolveHeapBudgetBytes();
+        this.tdbDatasetOverheadBytes = properties.getTdb().getDatasetOverhead().toBytes();
+
+        Gauge.builder("sparql.store.entries", stores, Map::size)
+                .description("Cached layer models")
+                .register(meterRegistry);
+        Gauge.builder("sparql.store.estimated.bytes", this, TripleStoreManager::getTotalEstimatedBytes)
+                .description("Estimated heap occupied by all cached layer models and materialized views")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("sparql.store.heap.budget.bytes", () -> heapBudgetBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("sparql.store.pending.loads", pendingLoads, Map::size)
+                .description("Layer loads in flight")
+                .register(meterRegistry);
+        
+        log.info("Triple store heap budget is {} MB with a ttl of {}", 
+                 DataSize.ofBytes(heapBudgetBytes).toMegabytes(), properties.getTtl());
+        
         // Start cleanup task every minute
         scheduler.scheduleWithFixedDelay(this::cleanupExpiredStores, 1, 1, TimeUnit.MINUTES);
     }
     
-    public Optional<Model> getStore(long orderId, QueryType queryType) {
-        String storeKey = createStoreKey(orderId, queryType);
+    public Optional<LayerModel> getStore(long orderId, ModelLayer layer) {
+        String storeKey = createStoreKey(orderId, layer);
         
         globalLock.readLock().lock();
         try {
             StoreEntry entry = stores.get(storeKey);
-            if (entry != null && !entry.isExpired(TIMEOUT_MINUTES)) {
+            if (entry != null && !entry.isExpired(properties.getTtl())) {
                 entry.updateLastAccessed();
-                log.debug("Retrieved existing store for order {} with query type {}", orderId, queryType);
-                return Optional.of(entry.getModel());
+                log.debug("Retrieved existing store for order {} with layer {}", orderId, layer);
+                return Optional.of(entry.getLayerModel());
             }
         } finally {
             globalLock.readLock().unlock();
@@ -48,88 +100,345 @@ public class TripleStoreManager {
         return Optional.empty();
     }
     
-    public void putStore(long orderId, QueryType queryType, Model model) {
-        String storeKey = createStoreKey(orderId, queryType);
+    // Concurrent misses for the same order and layer are coalesced: only the first caller runs the loader,
+    // every other caller waits for its result (or its failure).
+    public LayerModel getOrLoad(long orderId, ModelLayer layer, ModelLoader loader) throws SQLException, IOException {
+        Optional<LayerModel> cachedModel = getStore(orderId, layer);
+        if (cachedModel.isPresent()) {
+            return cachedModel.get();
+        }
+
+        String storeKey = createStoreKey(orderId, layer);
+        CompletableFuture<LayerModel> load = new CompletableFuture<>();
+        CompletableFuture<LayerModel> pendingLoad = pendingLoads.putIfAbsent(storeKey, load);
+
+        if (pendingLoad != null) {
+            log.debug("Waiting for pending load of order {} with layer {}", orderId, layer);
+            return FutureUtils.getUnwrapped(pendingLoad);
+        }
+
+        try {
+            // a previous load might have completed between the cache lookup and registering this load
+            LayerModel layerModel = getStore(orderId, layer).orElse(null);
+
+            if (layerModel == null) {
+                layerModel = loader.load();
+                putStore(orderId, layer, layerModel);
+            }
+
+            load.complete(layerModel);
+            return layerModel;
+        } catch (Throwable e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLoads.remove(storeKey, load);
+        }
+    }
+    
+    public void putStore(long orderId, ModelLayer layer, LayerModel layerModel) {
+        String storeKey = createStoreKey(orderId, layer);
+        long estimatedBytes = estimateBytes(layerModel);
         
         globalLock.writeLock().lock();
         try {
+            removeEntry(storeKey, "replaced");
+            
+            StoreEntry entry = new StoreEntry(orderId, layer, layerModel, estimatedBytes);
+            stores.put(storeKey, entry);
+            totalEstimatedBytes += estimatedBytes;
+            updateTdbDatasetBytes();
+            
             // Check if we need to make space
-            if (stores.size() >= MAX_STORES && !stores.containsKey(storeKey)) {
-                evictOldestStore();
+            if (totalEstimatedBytes > heapBudgetBytes) {
+                evictLeastRecentlyUsedStores(storeKey);
             }
             
-            StoreEntry entry = new StoreEntry(orderId, queryType, model);
-            stores.put(storeKey, entry);
+            if (!layerModel.isTdbBacked()) {
+                DistributionSummary.builder("sparql.store.triples")
+                        .description("Triples per cached in-memory layer model")
+                        .tag("layer", layer.name())
+                        .register(meterRegistry)
+                        .record(layerModel.model().size());
+            }
+            
+            log.info("Stored new triple store for order {} with layer {} (~{} MB, total stores: {}, total ~{} MB)", 
+                     orderId, layer, DataSize.ofBytes(estimatedBytes).toMegabytes(), stores.size(), 
+                     DataSize.ofBytes(totalEstimatedBytes).toMegabytes());
+            
+        } finally {
+            globalLock.writeLock().unlock();
+        }
+    }
+    
+    // Swaps the model of a cached layer for a refreshed one, unless the layer was removed or reloaded in the meantime.
+    // Publishes the removal of the previous model, so results and views computed from it are dropped.
+    public boolean replaceStore(long orderId, ModelLayer layer, LayerModel previousLayerModel, LayerModel layerModel) {
+        String storeKey = createStoreKey(orderId, layer);
+        long estimatedBytes = estimateBytes(layerModel);
+        
+        globalLock.writeLock().lock();
+        try {
+            StoreEntry previousEntry = stores.get(storeKey);
+            if (previousEntry == null || previousEntry.getLayerModel() != previousLayerModel) {
+                return false;
+            }
             
-            log.info("Stored new triple store for order {} with query type {} (total stores: {})", 
-                     orderId, queryType, stores.size());
+            removeEntry(storeKey, "refreshed");
+            stores.put(storeKey, previousEntry.withLayerModel(layerModel, estimatedBytes));
+            totalEstimatedBytes += estimatedBytes;
+            updateTdbDatasetBytes();
             
+            if (totalEstimatedBytes > heapBudgetBytes) {
+                evictLeastRecentlyUsedStores(storeKey);
+            }
+            
+            return true;
         } finally {
             globalLock.writeLock().unlock();
         }
     }
     
-    public void removeStore(long orderId, QueryType queryType) {
-        String storeKey = createStoreKey(orderId, queryType);
+    // Charges a view materialized from the given layer models, unless one of them was removed or replaced while
+    // the view was built. Checked under the write lock, so the view can't miss the removal of one of its layers.
+    public boolean putView(long orderId, QueryType queryType, List<LayerModel> layerModels, long viewId,
+            long estimatedBytes) {
+        String viewKey = createViewKey(orderId, queryType);
+        
+        globalLock.writeLock().lock();
+        try {
+            if (!isCachedLocked(orderId, queryType, layerModels)) {
+                return false;
+            }
+            
+            ViewEntry previousView = views.get(viewKey);
+            if (previousView != null) {
+                removeView(previousView, "replaced");
+            }
+            
+            views.put(viewKey, new ViewEntry(orderId, queryType, viewId, estimatedBytes));
+            viewEstimatedBytes += estimatedBytes;
+            totalEstimatedBytes += estimatedBytes;
+            
+            if (totalEstimatedBytes > heapBudgetBytes) {
+                evictLeastRecentlyUsedStores(viewKey);
+            }
+            
+            return true;
+        } finally {
+            globalLock.writeLock().unlock();
+        }
+    }
+    
+    // Whether the given layer models of the query type are still the cached ones of the order.
+    public boolean isCached(long orderId, QueryType queryType, List<LayerModel> layerModels) {
+        globalLock.readLock().lock();
+        try {
+            return isCachedLocked(orderId, queryType, layerModels);
+        } finally {
+            globalLock.readLock().unlock();
+        }
+    }
+    
+    // Must be called while holding the read or write lock
+    private boolean isCachedLocked(long orderId, QueryType queryType, List<LayerModel> layerModels) {
+        for (int i = 0; i < queryType.getLayers().size(); i++) {
+            StoreEntry entry = stores.get(createStoreKey(orderId, queryType.getLayers().get(i)));
+            if (entry == null || entry.getLayerModel() != layerModels.get(i)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    public void touchView(long orderId, QueryType queryType, long viewId) {
+        globalLock.readLock().lock();
+        try {
+            ViewEntry view = views.get(createViewKey(orderId, queryType));
+            if (view != null && view.getViewId() == viewId) {
+                view.updateLastAccessed();
+            }
+        } finally {
+            globalLock.readLock().unlock();
+        }
+    }
+    
+    // Whether a layer of the order is cached or being loaded, the tdb2 database of the order is still needed then.
+    // Waits for a running put or eviction, so a replaced layer isn't mistaken for a removed one.
+    public boolean isOrderInUse(long orderId) {
+        String storeKeyPrefix = orderId + ":";
+        
+        globalLock.readLock().lock();
+        try {
+            return stores.values().stream().anyMatch(entry -> entry.getOrderId() == orderId)
+                    || pendingLoads.keySet().stream().anyMatch(storeKey -> storeKey.startsWith(storeKeyPrefix));
+        } finally {
+            globalLock.readLock().unlock();
+        }
+    }
+    
+    public List<StoreEntry> getStoreEntries() {
+        return List.copyOf(stores.values());
+    }
+    
+    public void removeStore(long orderId, ModelLayer layer) {
+        String storeKey = createStoreKey(orderId, layer);
         
         globalLock.writeLock().lock();
         try {
-            StoreEntry removed = stores.remove(storeKey);
+            StoreEntry removed = removeEntry(storeKey, "removed");
             if (removed != null) {
-                log.info("Manually removed store for order {} with query type {}", orderId, queryType);
+                log.info("Manually removed store for order {} with layer {}", orderId, layer);
             }
         } finally {
             globalLock.writeLock().unlock();
         }
     }
     
-    private void evictOldestStore() {
-        StoreEntry oldestEntry = null;
-        String oldestKey = null;
-        LocalDateTime oldestTime = LocalDateTime.now();
+    // Must be called while holding the write lock. Layers and views are sorted once per eviction pass,
+    // the layer or view that was just stored is kept even if it exceeds the budget on its own.
+    private void evictLeastRecentlyUsedStores(String keepKey) {
+        List<Object> candidates = Stream.<Object>concat(
+                        stores.values().stream().filter(entry -> !entry.getStoreKey().equals(keepKey)),
+                        views.values().stream().filter(view -> !view.getViewKey().equals(keepKey)))
+                .sorted(Comparator.comparing(TripleStoreManager::lastAccessedAtOf))
+                .toList();
         
-        for (Map.Entry<String, StoreEntry> entry : stores.entrySet()) {
-            StoreEntry storeEntry = entry.getValue();
-            if (storeEntry.getLastAccessedAt().isBefore(oldestTime)) {
-                oldestTime = storeEntry.getLastAccessedAt();
-                oldestEntry = storeEntry;
-                oldestKey = entry.getKey();
+        for (Object candidate : candidates) {
+            if (totalEstimatedBytes <= heapBudgetBytes) {
+                break;
+            }
+            
+            if (candidate instanceof StoreEntry entry) {
+                if (removeEntry(entry.getStoreKey(), "evicted") != null) {
+                    log.info("Evicted least recently used store for order {} with layer {} (~{} MB, last accessed: {})",
+                             entry.getOrderId(), entry.getLayer(),
+                             DataSize.ofBytes(entry.getEstimatedBytes()).toMegabytes(), entry.getLastAccessedAt());
+                }
+            } else if (candidate instanceof ViewEntry view && removeView(view, "evicted")) {
+                // a view evicted with one of its layers earlier in this pass is gone already
+                log.info("Evicted least recently used {} view for order {} (~{} MB, last accessed: {})",
+                         view.getQueryType(), view.getOrderId(),
+                         DataSize.ofBytes(view.getEstimatedBytes()).toMegabytes(), view.getLastAccessedAt());
             }
         }
         
-        if (oldestKey != null && oldestEntry != null) {
-            stores.remove(oldestKey);
-            log.info("Evicted oldest store for order {} with query type {} (last accessed: {})", 
-                     oldestEntry.getOrderId(), oldestEntry.getQueryType(), oldestEntry.getLastAccessedAt());
+        if (totalEstimatedBytes > heapBudgetBytes) {
+            log.warn("Triple store heap budget of {} MB exceeded by a single store (~{} MB)", 
+                     DataSize.ofBytes(heapBudgetBytes).toMegabytes(), 
+                     DataSize.ofBytes(totalEstimatedBytes).toMegabytes());
         }
     }
     
     private void cleanupExpiredStores() {
         globalLock.writeLock().lock();
         try {
-            stores.entrySet().removeIf(entry -> {
-                StoreEntry storeEntry = entry.getValue();
-                if (storeEntry.isExpired(TIMEOUT_MINUTES)) {
-                    log.info("Cleaned up expired store for order {} with query type {} (expired at: {})", 
-                             storeEntry.getOrderId(), storeEntry.getQueryType(), 
-                             storeEntry.getLastAccessedAt().plusMinutes(TIMEOUT_MINUTES));
-                    return true;
-                }
-                return false;
-            });
+            List<StoreEntry> expiredEntries = stores.values().stream()
+                    .filter(entry -> entry.isExpired(properties.getTtl()))
+                    .toList();
+            
+            for (StoreEntry storeEntry : expiredEntries) {
+                removeEntry(storeEntry.getStoreKey(), "expired");
+                log.info("Cleaned up expired store for order {} with layer {} (expired at: {})", 
+                         storeEntry.getOrderId(), storeEntry.getLayer(), 
+                         storeEntry.getLastAccessedAt().plus(properties.getTtl()));
+            }
         } finally {
             globalLock.writeLock().unlock();
         }
     }
     
-    private String createStoreKey(long orderId, QueryType queryType) {
-        return orderId + ":" + queryType.name();
+    // Must be called while holding the write lock
+    private StoreEntry removeEntry(String storeKey, String cause) {
+        StoreEntry removed = stores.remove(storeKey);
+        if (removed != null) {
+            totalEstimatedBytes -= removed.getEstimatedBytes();
+            updateTdbDatasetBytes();
+            meterRegistry.counter("sparql.store.removals", "layer", removed.getLayer().name(), "cause", cause).increment();
+            eventPublisher.publishEvent(new StoreEntryRemovedEvent(removed.getOrderId(), removed.getLayer()));
+            
+            for (ViewEntry view : List.copyOf(views.values())) {
+                if (view.getOrderId() == removed.getOrderId() && view.getQueryType().getLayers().contains(removed.getLayer())) {
+                    removeView(view, cause);
+                }
+            }
+        }
+        return removed;
+    }
+    
+    // Must be called while holding the write lock
+    private boolean removeView(ViewEntry view, String cause) {
+        if (!views.remove(view.getViewKey(), view)) {
+            return false;
+        }
+        
+        viewEstimatedBytes -= view.getEstimatedBytes();
+        totalEstimatedBytes -= view.getEstimatedBytes();
+        meterRegistry.counter("sparql.view.materialized.removals", "query_type", view.getQueryType().name(), "cause", cause)
+                .increment();
+        eventPublisher.publishEvent(new MaterializedViewRemovedEvent(view.getOrderId(), view.getQueryType(), view.getViewId()));
+        return true;
+    }
+    
+    private static LocalDateTime lastAccessedAtOf(Object candidate) {
+        return candidate instanceof StoreEntry entry ? entry.getLastAccessedAt() : ((ViewEntry) candidate).getLastAccessedAt();
+    }
+    
+    // Must be called while holding the write lock. The caches of a tdb2 database are on the heap and shared
+    // by all layers of its order, so they are charged once per database rather than per layer.
+    private void updateTdbDatasetBytes() {
+        long connectedDatasets = stores.values().stream()
+                .map(entry -> entry.getLayerModel().dataset())
+                .filter(Objects::nonNull)
+                .distinct()
+                .count();
+        
+        long datasetBytes = connectedDatasets * tdbDatasetOverheadBytes;
+        totalEstimatedBytes += datasetBytes - tdbDatasetBytes;
+        tdbDatasetBytes = datasetBytes;
+    }
+    
+    private long estimateBytes(LayerModel layerModel) {
+        // the triples of tdb2 backed layers live in memory mapped files outside of the heap,
+        // only their database caches are charged by updateTdbDatasetBytes
+        if (layerModel.isTdbBacked()) {
+            return 0;
+        }
+        
+        return layerGraphFactory.estimateBytes(layerModel.model(), properties.getBytesPerTriple().toBytes());
+    }
+    
+    private String createStoreKey(long orderId, ModelLayer layer) {
+        return orderId + ":" + layer.name();
+    }
+    
+    private static String createViewKey(long orderId, QueryType queryType) {
+        return orderId + ":view:" + queryType.name();
     }
     
     public int getCurrentStoreCount() {
         return stores.size();
     }
     
+    public long getTotalEstimatedBytes() {
+        globalLock.readLock().lock();
+        try {
+            return totalEstimatedBytes;
+        } finally {
+            globalLock.readLock().unlock();
+        }
+    }
+    
+    public long getViewEstimatedBytes() {
+        globalLock.readLock().lock();
+        try {
+            return viewEstimatedBytes;
+        } finally {
+            globalLock.readLock().unlock();
+        }
+    }
+    
     public void shutdown() {
         scheduler.shutdown();
         try {
@@ -144,8 +453,36 @@ public class TripleStoreManager {
         globalLock.writeLock().lock();
         try {
             stores.clear();
+            views.clear();
+            totalEstimatedBytes = 0;
+            tdbDatasetBytes = 0;
+            viewEstimatedBytes = 0;
         } finally {
             globalLock.writeLock().unlock();
         }
     }
+    
+    @Getter
+    private static class ViewEntry {
+        private final long orderId;
+        private final QueryType queryType;
+        private final long viewId;
+        private final long estimatedBytes;
+        private volatile LocalDateTime lastAccessedAt = LocalDateTime.now();
+        
+        private ViewEntry(long orderId, QueryType queryType, long viewId, long estimatedBytes) {
+            this.orderId = orderId;
+            this.queryType = queryType;
+            this.viewId = viewId;
+            this.estimatedBytes = estimatedBytes;
+        }
+        
+        private void updateLastAccessed() {
+            this.lastAccessedAt = LocalDateTime.now();
+        }
+        
+        private String getViewKey() {
+            return createViewKey(orderId, queryType);
+        }
+    }
 }
\ No newline at end of file
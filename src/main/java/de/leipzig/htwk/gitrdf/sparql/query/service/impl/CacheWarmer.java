@@ -0,0 +1,147 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+import de.leipzig.htwk.gitrdf.sparql.query.service.OrderAccessLog;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import de.leipzig.htwk.gitrdf.sparql.query.service.TripleStoreManager;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Preloads the layers of configured, most queried and recently converted orders after startup,
+// so their first queries don't pay for fetching and parsing the rdf. Runs in the background,
+// the service is ready and answers queries while the warm-up is still in progress.
+@Component
+@Slf4j
+public class CacheWarmer {
+
+    private final TripleStoreProperties.WarmUp warmUp;
+    private final long heapBudgetBytes;
+    private final TripleStoreManager tripleStoreManager;
+    private final LayerModelLoader layerModelLoader;
+    private final OrderRdfReader orderRdfReader;
+    private final OrderAccessLog orderAccessLog;
+
+    private final ExecutorService warmUpExecutor;
+
+    public CacheWarmer(
+            TripleStoreProperties properties,
+            TripleStoreManager tripleStoreManager,
+            LayerModelLoader layerModelLoader,
+            OrderRdfReader orderRdfReader,
+            OrderAccessLog orderAccessLog) {
+
+        this.warmUp = properties.getWarmUp();
+        this.heapBudgetBytes = properties.resolveHeapBudgetBytes();
+        this.tripleStoreManager = tripleStoreManager;
+        this.layerModelLoader = layerModelLoader;
+        this.orderRdfReader = orderRdfReader;
+        this.orderAccessLog = orderAccessLog;
+
+        this.warmUpExecutor = Executors.newFixedThreadPool(
+                warmUp.getParallelism(), Thread.ofPlatform().name("cache-warm-up-", 0).daemon().factory());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!warmUp.isEnabled()) {
+            return;
+        }
+
+        Thread.ofPlatform().name("cache-warm-up").daemon().start(this::warmUp);
+    }
+
+    private void warmUp() {
+        List<Long> orderIds;
+        try {
+            orderIds = resolveOrderIds();
+        } catch (Exception e) {
+            log.warn("Skipping cache warm-up, the orders to preload couldn't be determined: {}", e.getMessage());
+            return;
+        }
+
+        Set<ModelLayer> layers = new LinkedHashSet<>();
+        for (QueryType queryType : warmUp.getQueryTypes()) {
+            layers.addAll(queryType.getLayers());
+        }
+
+        if (orderIds.isEmpty() || layers.isEmpty()) {
+            return;
+        }
+
+        log.info("Warming up {} layers of {} orders", layers, orderIds.size());
+        long warmUpStart = System.nanoTime();
+
+        List<Callable<Boolean>> orderWarmUps = new ArrayList<>();
+        for (long orderId : orderIds) {
+            orderWarmUps.add(() -> warmUpOrder(orderId, layers));
+        }
+
+        try {
+            long warmedUpOrders = 0;
+            for (var orderWarmUp : warmUpExecutor.invokeAll(orderWarmUps)) {
+                if (orderWarmUp.get()) {
+                    warmedUpOrders++;
+                }
+            }
+
+            log.info("Cache warm-up loaded {} of {} orders in {} ms",
+                    warmedUpOrders, orderIds.size(), (System.nanoTime() - warmUpStart) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Cache warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    // configured orders first, followed by the most queried and the most recently converted ones
+    private List<Long> resolveOrderIds() {
+        Set<Long> orderIds = new LinkedHashSet<>(warmUp.getOrderIds());
+
+        if (warmUp.getMostAccessedOrders() > 0) {
+            orderIds.addAll(orderAccessLog.getMostAccessedOrderIds(warmUp.getMostAccessedOrders()));
+        }
+
+        if (warmUp.getRecentlyDoneOrders() > 0) {
+            orderIds.addAll(orderRdfReader.findRecentlyConvertedOrderIds(warmUp.getRecentlyDoneOrders()));
+        }
+
+        return List.copyOf(orderIds);
+    }
+
+    // Stops once the cached layers fill the heap budget, warming up further orders would only evict the previous ones.
+    private boolean warmUpOrder(long orderId, Set<ModelLayer> layers) {
+        for (ModelLayer layer : layers) {
+            if (tripleStoreManager.getTotalEstimatedBytes() >= heapBudgetBytes) {
+                log.debug("Skipping warm-up of order {}, the heap budget is used up", orderId);
+                return false;
+            }
+
+            try {
+                tripleStoreManager.getOrLoad(orderId, layer, () -> layerModelLoader.loadLayerModel(orderId, layer));
+            } catch (Exception e) {
+                log.warn("Cache warm-up of {} layer for order {} failed: {}", layer, orderId, e.getMessage());
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmUpExecutor.shutdownNow();
+    }
+}
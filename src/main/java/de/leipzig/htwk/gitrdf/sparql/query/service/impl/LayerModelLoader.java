@@ -0,0 +1,82 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service.impl;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdf.model.Model;
+import org.springframework.stereotype.Service;
+
+import de.leipzig.htwk.gitrdf.sparql.query.service.GraphLoader;
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerGraphFactory;
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerModel;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelSnapshotStore;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryMetrics;
+import de.leipzig.htwk.gitrdf.sparql.query.service.TdbLayerStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LayerModelLoader {
+
+    private final OrderRdfReader orderRdfReader;
+    private final ModelSnapshotStore modelSnapshotStore;
+    private final TdbLayerStore tdbLayerStore;
+    private final LayerGraphFactory layerGraphFactory;
+    private final QueryMetrics queryMetrics;
+
+    // Not transactional itself: snapshot and tdb2 hits are served without a database connection,
+    // only describing the layer and reading its blobs on a miss touch the database. A miss stores the layer
+    // under the fingerprint taken in the read transaction, never under the one of the earlier description.
+    public LayerModel loadLayerModel(long entryId, ModelLayer layer) throws SQLException, IOException {
+        long loadStart = System.nanoTime();
+        try {
+            // validate the order on every load, layers may be loaded independently of each other
+            OrderRdfReader.LayerSource layerSource = orderRdfReader.describeLayer(entryId, layer);
+            AtomicReference<OrderRdfReader.LayerSource> readSource = new AtomicReference<>(layerSource);
+            GraphLoader graphLoader = graph -> {
+                readSource.set(orderRdfReader.readLayerInto(entryId, layer, graph));
+                return readSource.get().fingerprint();
+            };
+
+            // all layers of an order share one backend, decided by the size of its base rdf file
+            LayerModel layerModel = tdbLayerStore.isResponsibleFor(layerSource.baseRdfBytes())
+                    ? tdbLayerStore.getOrLoad(entryId, layer, layerSource.fingerprint(), graphLoader)
+                    : loadInMemoryLayerModel(entryId, layer, layerSource.fingerprint(), graphLoader);
+            layerModel = layerModel.withAnalysisWatermark(readSource.get().analysisWatermark());
+
+            queryMetrics.recordLayerLoad(layer, System.nanoTime() - loadStart);
+            log.info("Loaded new {} layer for order {}{}", layer, entryId, layerModel.isTdbBacked() ? " (tdb2)" : "");
+
+            return layerModel;
+        } catch (Exception e) {
+            log.error("SPARQL query failed for order {}: {}", entryId, e.getMessage());
+            throw e;
+        }
+    }
+
+    private LayerModel loadInMemoryLayerModel(long entryId, ModelLayer layer, String fingerprint, GraphLoader graphLoader)
+            throws SQLException, IOException {
+
+        Optional<Model> snapshotModel = modelSnapshotStore.read(entryId, layer, fingerprint);
+
+        if (snapshotModel.isPresent()) {
+            log.debug("Using snapshot of {} layer for order {}", layer, entryId);
+            return LayerModel.inMemory(snapshotModel.get());
+        }
+
+        Graph graph = layerGraphFactory.createGraph();
+        String loadedFingerprint = graphLoader.loadInto(graph);
+
+        Model model = layerGraphFactory.toModel(graph);
+        modelSnapshotStore.writeAsync(entryId, layer, loadedFingerprint, model);
+
+        return LayerModel.inMemory(model);
+    }
+
+}
@@ -0,0 +1,122 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service.impl;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.springframework.stereotype.Component;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerGraphFactory;
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerModel;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelSnapshotStore;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryMetrics;
+import de.leipzig.htwk.gitrdf.sparql.query.service.StoreEntry;
+import de.leipzig.htwk.gitrdf.sparql.query.service.TdbLayerStore;
+import de.leipzig.htwk.gitrdf.sparql.query.service.TripleStoreManager;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Keeps cached analysis layers up to date while the analysis pipeline adds rows to their orders.
+// Only the rdf of rows above the watermark of a layer is read, instead of reloading every analysis of the order.
+@Component
+@Slf4j
+public class LayerRefresher {
+
+    private final TripleStoreManager tripleStoreManager;
+    private final OrderRdfReader orderRdfReader;
+    private final LayerGraphFactory layerGraphFactory;
+    private final ModelSnapshotStore modelSnapshotStore;
+    private final TdbLayerStore tdbLayerStore;
+    private final QueryMetrics queryMetrics;
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "layer-refresher"));
+
+    public LayerRefresher(
+            TripleStoreProperties properties,
+            TripleStoreManager tripleStoreManager,
+            OrderRdfReader orderRdfReader,
+            LayerGraphFactory layerGraphFactory,
+            ModelSnapshotStore modelSnapshotStore,
+            TdbLayerStore tdbLayerStore,
+            QueryMetrics queryMetrics) {
+
+        this.tripleStoreManager = tripleStoreManager;
+        this.orderRdfReader = orderRdfReader;
+        this.layerGraphFactory = layerGraphFactory;
+        this.modelSnapshotStore = modelSnapshotStore;
+        this.tdbLayerStore = tdbLayerStore;
+        this.queryMetrics = queryMetrics;
+
+        if (properties.getRefresh().isEnabled()) {
+            long intervalMillis = properties.getRefresh().getInterval().toMillis();
+            refresher.scheduleWithFixedDelay(this::refreshAnalysisLayers, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshAnalysisLayers() {
+        for (StoreEntry storeEntry : tripleStoreManager.getStoreEntries()) {
+            if (storeEntry.getLayerModel().analysisWatermark() == null) {
+                continue;
+            }
+
+            try {
+                refresh(storeEntry.getOrderId(), storeEntry.getLayer(), storeEntry.getLayerModel());
+            } catch (Exception e) {
+                queryMetrics.recordLayerRefresh(storeEntry.getLayer(), "failed");
+                log.warn("Failed to refresh {} layer for order {}: {}",
+                        storeEntry.getLayer(), storeEntry.getOrderId(), e.getMessage());
+            }
+        }
+    }
+
+    private void refresh(long orderId, ModelLayer layer, LayerModel layerModel) throws Exception {
+        // added rows are few compared to the loaded ones, so they are read into a temporary graph first
+        Graph addedTriples = Factory.createDefaultGraph();
+
+        Optional<OrderRdfReader.AnalysisDelta> analysisDelta = orderRdfReader.readAddedAnalysesInto(
+                orderId, layer, layerModel.analysisWatermark(), addedTriples);
+
+        if (analysisDelta.isEmpty()) {
+            // rows were removed, the next query loads the layer again
+            tripleStoreManager.removeStore(orderId, layer);
+            queryMetrics.recordLayerRefresh(layer, "removed");
+            log.info("Analysis rows of {} layer for order {} were removed, dropped the cached layer", layer, orderId);
+            return;
+        }
+
+        if (analysisDelta.get().addedAnalyses() == 0) {
+            queryMetrics.recordLayerRefresh(layer, "unchanged");
+            return;
+        }
+
+        String fingerprint = analysisDelta.get().fingerprint();
+        LayerModel refreshedLayerModel;
+
+        if (layerModel.isTdbBacked()) {
+            tdbLayerStore.append(orderId, layer, fingerprint, addedTriples);
+            refreshedLayerModel = layerModel;
+        } else {
+            refreshedLayerModel = LayerModel.inMemory(layerGraphFactory.extend(layerModel.model(), addedTriples));
+            modelSnapshotStore.writeAsync(orderId, layer, fingerprint, refreshedLayerModel.model());
+        }
+
+        refreshedLayerModel = refreshedLayerModel.withAnalysisWatermark(analysisDelta.get().analysisWatermark());
+
+        if (tripleStoreManager.replaceStore(orderId, layer, layerModel, refreshedLayerModel)) {
+            queryMetrics.recordLayerRefresh(layer, "extended");
+            log.info("Added {} analysis rows ({} triples) to {} layer for order {}",
+                    analysisDelta.get().addedAnalyses(), addedTriples.size(), layer, orderId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,429 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.leipzig.htwk.gitrdf.database.common.entity.GithubRepositoryOrderAnalysisEntity;
+import de.leipzig.htwk.gitrdf.database.common.entity.GithubRepositoryOrderEntity;
+import de.leipzig.htwk.gitrdf.database.common.entity.enums.AnalysisType;
+import de.leipzig.htwk.gitrdf.database.common.entity.enums.GitRepositoryOrderStatus;
+import de.leipzig.htwk.gitrdf.database.common.entity.lob.GithubRepositoryOrderEntityLobs;
+import de.leipzig.htwk.gitrdf.database.common.repository.GithubRepositoryOrderAnalysisRepository;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.NotFoundException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.service.AnalysisWatermark;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+
+// The database facing part of a layer load. Each method runs in its own short transaction,
+// so a connection is only held while the order is validated or its rdf blobs are read.
+@Service
+@Slf4j
+public class OrderRdfReader {
+
+    private static final long SPILL_THRESHOLD_BYTES = 1024 * 1024;
+    private static final String SPILL_FILE_PREFIX = "gitrdf-analysis-";
+
+    // ranges of the base rdf blob checksummed for its fingerprint
+    private static final int FINGERPRINT_SAMPLES = 16;
+    private static final int FINGERPRINT_SAMPLE_BYTES = 4096;
+
+    private final EntityManager entityManager;
+    private final GithubRepositoryOrderAnalysisRepository analysisRepository;
+    private final QueryMetrics queryMetrics;
+
+    private final ExecutorService parseExecutor;
+    // bounds the analysis blobs that are read but not parsed yet, a permit is held from reading a blob until its parse ended
+    private final Semaphore pendingParses;
+    private final int mergeWindow;
+
+    // analysisWatermark is null for the base layer
+    public record LayerSource(String fingerprint, long baseRdfBytes, AnalysisWatermark analysisWatermark) {
+    }
+
+    public record AnalysisDelta(String fingerprint, AnalysisWatermark analysisWatermark, int addedAnalyses) {
+    }
+
+    private record PendingParse(GithubRepositoryOrderAnalysisEntity analysis, CompletableFuture<Model> parsedModel) {
+    }
+
+    // the rdf of an analysis blob, either on the heap or spilled to a temp file
+    private record BlobContent(byte[] bytes, Path spillFile) {
+
+        private InputStream openStream() throws IOException {
+            return spillFile != null ? Files.newInputStream(spillFile) : new ByteArrayInputStream(bytes);
+        }
+
+        private void delete() {
+            if (spillFile == null) {
+                return;
+            }
+
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("Failed to delete analysis spill file {}", spillFile, e);
+            }
+        }
+    }
+
+    public OrderRdfReader(
+            EntityManager entityManager,
+            GithubRepositoryOrderAnalysisRepository analysisRepository,
+            QueryMetrics queryMetrics,
+            TripleStoreProperties properties) {
+
+        this.entityManager = entityManager;
+        this.analysisRepository = analysisRepository;
+        this.queryMetrics = queryMetrics;
+
+        int parseParallelism = properties.getParseParallelism();
+        this.parseExecutor = Executors.newFixedThreadPool(
+                parseParallelism, Thread.ofPlatform().name("rdf-parse-", 0).daemon().factory());
+        this.pendingParses = new Semaphore(parseParallelism * 4);
+        this.mergeWindow = parseParallelism * 2;
+    }
+
+    // Validates the order and identifies the current content of the layer without parsing the rdf itself.
+    @Transactional(readOnly = true, rollbackFor = { SQLException.class, IOException.class })
+    public LayerSource describeLayer(long entryId, ModelLayer layer) throws SQLException, IOException {
+        GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = findConvertedOrderLobs(entryId);
+        Blob baseRdfBlob = githubRepositoryOrderEntityLobs.getRdfFile();
+
+        long baseRdfBytes = baseRdfBlob == null ? 0 : baseRdfBlob.length();
+
+        if (!layer.isAnalysisLayer()) {
+            return new LayerSource(fingerprintOf(baseRdfBlob), baseRdfBytes, null);
+        }
+
+        List<GithubRepositoryOrderAnalysisEntity> analyses = analysisRepository
+                .findAllByGithubRepositoryOrderIdAndAnalysisType(entryId, layer.getAnalysisType());
+
+        // rows added between describing and reading the layer end up above the watermark,
+        // a later refresh reads them again, which doesn't duplicate their triples in the layer
+        return new LayerSource(fingerprintOf(analyses), baseRdfBytes, watermarkOf(analyses));
+    }
+
+    // Reads only the analysis rows added after the watermark. Empty if rows up to the watermark were removed,
+    // the layer can't be extended then and has to be loaded again completely.
+    @Transactional(readOnly = true, rollbackFor = InterruptedIOException.class)
+    public Optional<AnalysisDelta> readAddedAnalysesInto(long entryId, ModelLayer layer, AnalysisWatermark analysisWatermark,
+            Graph graph) throws InterruptedIOException {
+
+        // the rows are listed without their blobs, only the blobs of added rows are read
+        List<GithubRepositoryOrderAnalysisEntity> analyses = analysisRepository
+                .findAllByGithubRepositoryOrderIdAndAnalysisType(entryId, layer.getAnalysisType());
+
+        List<GithubRepositoryOrderAnalysisEntity> addedAnalyses = analyses.stream()
+                .filter(analysis -> analysis.getId() > analysisWatermark.maxAnalysisId())
+                .toList();
+
+        if (analyses.size() - addedAnalyses.size() != analysisWatermark.analysisCount()) {
+            return Optional.empty();
+        }
+
+        if (!addedAnalyses.isEmpty()) {
+            loadAnalysisRdfInto(entryId, layer, addedAnalyses, graph);
+        }
+
+        return Optional.of(new AnalysisDelta(fingerprintOf(analyses), watermarkOf(analyses), addedAnalyses.size()));
+    }
+
+    // Only called if neither a snapshot nor a tdb2 database holds the layer yet. Returns the source of exactly
+    // the content that was read, the layer has to be stored under its fingerprint rather than the described one,
+    // as the order may have been regenerated in between.
+    @Transactional(readOnly = true, rollbackFor = { SQLException.class, IOException.class })
+    public LayerSource readLayerInto(long entryId, ModelLayer layer, Graph graph) throws SQLException, IOException {
+        GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = findConvertedOrderLobs(entryId);
+        Blob baseRdfBlob = githubRepositoryOrderEntityLobs.getRdfFile();
+
+        long baseRdfBytes = baseRdfBlob == null ? 0 : baseRdfBlob.length();
+
+        if (layer.isAnalysisLayer()) {
+            List<GithubRepositoryOrderAnalysisEntity> analyses = analysisRepository
+                    .findAllByGithubRepositoryOrderIdAndAnalysisType(entryId, layer.getAnalysisType());
+
+            loadAnalysisRdfInto(entryId, layer, analyses, graph);
+
+            return new LayerSource(fingerprintOf(analyses), baseRdfBytes, watermarkOf(analyses));
+        }
+
+        // taken in the transaction reading the blob, so it describes exactly the parsed content
+        String fingerprint = fingerprintOf(baseRdfBlob);
+
+        long parseStart = System.nanoTime();
+        loadRdfBlobInto(baseRdfBlob, graph);
+        queryMetrics.recordParse(layer, System.nanoTime() - parseStart);
+
+        return new LayerSource(fingerprint, baseRdfBytes, null);
+    }
+
+    // Order ids are assigned ascending, so the highest ids of converted orders are the latest ones.
+    @Transactional(readOnly = true)
+    public List<Long> findRecentlyConvertedOrderIds(int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<GithubRepositoryOrderEntity> order = query.from(GithubRepositoryOrderEntity.class);
+
+        query.select(order.get("id"))
+                .where(criteriaBuilder.equal(order.get("status"), GitRepositoryOrderStatus.DONE))
+                .orderBy(criteriaBuilder.desc(order.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private GithubRepositoryOrderEntityLobs findConvertedOrderLobs(long entryId) {
+        GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = entityManager
+                .find(GithubRepositoryOrderEntityLobs.class, entryId);
+
+        if (githubRepositoryOrderEntityLobs == null) {
+            throw NotFoundException.githubEntryNotFound(entryId);
+        }
+
+        GithubRepositoryOrderEntity githubRepositoryOrderEntity = githubRepositoryOrderEntityLobs.getOrderEntity();
+
+        if (!githubRepositoryOrderEntity.getStatus().equals(GitRepositoryOrderStatus.DONE)) {
+            throw BadRequestException.githubToRdfConversionNotDone(entryId);
+        }
+
+        return githubRepositoryOrderEntityLobs;
+    }
+
+    // The blobs are read one after another on the loading thread, which holds the database transaction,
+    // while parsing them is spread over the parse executor. The results are merged in their original order
+    // as soon as they are parsed, at most MERGE_WINDOW parsed models wait for an earlier one to be merged.
+    private void loadAnalysisRdfInto(long entryId, ModelLayer layer,
+            List<GithubRepositoryOrderAnalysisEntity> analyses, Graph graph) throws InterruptedIOException {
+
+        AnalysisType analysisType = layer.getAnalysisType();
+
+        Deque<PendingParse> pendingMerges = new ArrayDeque<>();
+
+        try {
+            for (GithubRepositoryOrderAnalysisEntity analysis : analyses) {
+                if (pendingMerges.size() >= mergeWindow) {
+                    mergeInto(graph, analysisType, pendingMerges.removeFirst());
+                }
+
+                // released by the parse task once it is done with the blob
+                pendingParses.acquire();
+
+                BlobContent rdfContent;
+                try {
+                    long fetchStart = System.nanoTime();
+                    rdfContent = readBlob(analysis.getRdfBlob());
+                    queryMetrics.recordBlobFetch(layer, System.nanoTime() - fetchStart);
+                } catch (Exception e) {
+                    pendingParses.release();
+                    logFailedAnalysis(analysisType, analysis);
+                    continue;
+                }
+
+                CompletableFuture<Model> parsedAnalysis = new CompletableFuture<>();
+                try {
+                    parseExecutor.execute(() -> parse(layer, rdfContent, parsedAnalysis));
+                } catch (RejectedExecutionException e) {
+                    rdfContent.delete();
+                    pendingParses.release();
+                    throw e;
+                }
+
+                pendingMerges.addLast(new PendingParse(analysis, parsedAnalysis));
+            }
+
+            while (!pendingMerges.isEmpty()) {
+                mergeInto(graph, analysisType, pendingMerges.removeFirst());
+            }
+        } catch (InterruptedException e) {
+            // parses that haven't started yet skip their blob
+            pendingMerges.forEach(pendingParse -> pendingParse.parsedModel().cancel(false));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading analysis rdf of order " + entryId);
+        }
+
+        log.debug("Loaded {} {} analysis entries for repository order {}", 
+                analyses.size(), analysisType.name().toLowerCase(), entryId);
+    }
+
+    private void mergeInto(Graph graph, AnalysisType analysisType, PendingParse pendingParse) throws InterruptedException {
+        try {
+            // parsed on its own first, so a broken analysis doesn't leave partial triples behind
+            GraphUtil.addInto(graph, pendingParse.parsedModel().get().getGraph());
+        } catch (ExecutionException e) {
+            logFailedAnalysis(analysisType, pendingParse.analysis());
+        }
+    }
+
+    // Cleans up after itself, a cancelled load doesn't know whether the parse still reads the spill file.
+    private void parse(ModelLayer layer, BlobContent rdfContent, CompletableFuture<Model> parsedAnalysis) {
+        try {
+            if (!parsedAnalysis.isDone()) {
+                parsedAnalysis.complete(parseTurtle(layer, rdfContent));
+            }
+        } catch (Throwable e) {
+            // the merge waits for the future, it has to complete even if the parse ran out of memory
+            parsedAnalysis.completeExceptionally(e);
+        } finally {
+            rdfContent.delete();
+            pendingParses.release();
+        }
+    }
+
+    private Model parseTurtle(ModelLayer layer, BlobContent rdfContent) {
+        long parseStart = System.nanoTime();
+        Model model = ModelFactory.createDefaultModel();
+
+        try (InputStream inputStream = rdfContent.openStream()) {
+            RDFParser.source(inputStream)
+                    .lang(Lang.TURTLE)
+                    .parse(model.getGraph());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        queryMetrics.recordParse(layer, System.nanoTime() - parseStart);
+
+        return model;
+    }
+
+    // The blob can only be read on the thread holding the transaction, so it is handed to the parse executor
+    // as a copy. Blobs above SPILL_THRESHOLD_BYTES are copied to a temp file instead of the heap.
+    private BlobContent readBlob(Blob rdfBlob) throws SQLException, IOException {
+        if (rdfBlob == null) {
+            return new BlobContent(new byte[0], null);
+        }
+
+        if (rdfBlob.length() <= SPILL_THRESHOLD_BYTES) {
+            try (InputStream inputStream = rdfBlob.getBinaryStream()) {
+                return new BlobContent(inputStream.readAllBytes(), null);
+            }
+        }
+
+        Path spillFile = Files.createTempFile(SPILL_FILE_PREFIX, ".ttl");
+        try (InputStream inputStream = rdfBlob.getBinaryStream()) {
+            Files.copy(inputStream, spillFile, StandardCopyOption.REPLACE_EXISTING);
+            return new BlobContent(null, spillFile);
+        } catch (IOException | SQLException e) {
+            Files.deleteIfExists(spillFile);
+            throw e;
+        }
+    }
+
+    private void logFailedAnalysis(AnalysisType analysisType, GithubRepositoryOrderAnalysisEntity analysis) {
+        log.warn("Failed to load {} RDF for analysis ID {} (metricId: {})", 
+                analysisType.name().toLowerCase(), analysis.getId(), analysis.getMetricId());
+    }
+
+    // The base rdf file carries no conversion timestamp, a regenerated file is told apart by its length and a
+    // checksum over evenly spread ranges and the end of it. The ranges are read on their own, so describing
+    // a layer held by a snapshot or a tdb2 database doesn't stream the whole blob from the database.
+    private String fingerprintOf(Blob rdfBlob) throws SQLException {
+        if (rdfBlob == null) {
+            return "empty";
+        }
+
+        long length = rdfBlob.length();
+        long sampleDistance = Math.max(FINGERPRINT_SAMPLE_BYTES, (length + FINGERPRINT_SAMPLES - 1) / FINGERPRINT_SAMPLES);
+        CRC32C checksum = new CRC32C();
+
+        for (long offset = 0; offset < length; offset += sampleDistance) {
+            checksum.update(sampleOf(rdfBlob, offset, length));
+        }
+        checksum.update(sampleOf(rdfBlob, Math.max(0, length - FINGERPRINT_SAMPLE_BYTES), length));
+
+        return Long.toHexString(length) + "-" + Long.toHexString(checksum.getValue());
+    }
+
+    // blob positions start at 1
+    private static byte[] sampleOf(Blob rdfBlob, long offset, long length) throws SQLException {
+        return rdfBlob.getBytes(offset + 1, (int) Math.min(FINGERPRINT_SAMPLE_BYTES, length - offset));
+    }
+
+    // Analysis rows are only ever added or removed, so their ids identify the content of an analysis layer.
+    private String fingerprintOf(List<GithubRepositoryOrderAnalysisEntity> analyses) {
+        long[] analysisIds = analyses.stream()
+                .mapToLong(GithubRepositoryOrderAnalysisEntity::getId)
+                .sorted()
+                .toArray();
+
+        ByteBuffer idBuffer = ByteBuffer.allocate(Long.BYTES * analysisIds.length);
+        for (long analysisId : analysisIds) {
+            idBuffer.putLong(analysisId);
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(idBuffer.array());
+
+        long maxId = analysisIds.length == 0 ? 0 : analysisIds[analysisIds.length - 1];
+
+        return analysisIds.length + "-" + Long.toHexString(maxId) + "-" + Long.toHexString(checksum.getValue());
+    }
+
+    private AnalysisWatermark watermarkOf(List<GithubRepositoryOrderAnalysisEntity> analyses) {
+        long maxAnalysisId = analyses.stream()
+                .mapToLong(GithubRepositoryOrderAnalysisEntity::getId)
+                .max()
+                .orElse(0);
+
+        return new AnalysisWatermark(maxAnalysisId, analyses.size());
+    }
+
+    // The blob stream is fed straight into the streaming turtle parser, which decodes utf-8 itself,
+    // so neither a temp file nor an in-memory copy of the serialized rdf is needed.
+    private void loadRdfBlobInto(Blob rdfBlob, Graph graph) throws SQLException, IOException {
+        if (rdfBlob == null) {
+            return;
+        }
+
+        try (InputStream inputStream = rdfBlob.getBinaryStream()) {
+            RDFParser.source(inputStream)
+                    .lang(Lang.TURTLE)
+                    .parse(graph);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdownNow();
+    }
+
+}
@@ -1,42 +1,58 @@
 package de.leipzig.htwk.gitrdf.sparql.query.service.impl;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.sql.Blob;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-
-import org.apache.commons.io.FileUtils;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
 import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.ResultSet;
-import org.apache.jena.query.ResultSetFormatter;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.engine.ResultSetStream;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
-import de.leipzig.htwk.gitrdf.database.common.entity.GithubRepositoryOrderEntity;
-import de.leipzig.htwk.gitrdf.database.common.entity.GithubRepositoryOrderAnalysisEntity;
-import de.leipzig.htwk.gitrdf.database.common.entity.enums.AnalysisType;
-import de.leipzig.htwk.gitrdf.database.common.entity.enums.GitRepositoryOrderStatus;
-import de.leipzig.htwk.gitrdf.database.common.entity.lob.GithubRepositoryOrderEntityLobs;
-import de.leipzig.htwk.gitrdf.database.common.repository.GithubRepositoryOrderAnalysisRepository;
+
 import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
 import de.leipzig.htwk.gitrdf.sparql.query.api.exception.NotFoundException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.QueryTimeoutException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import de.leipzig.htwk.gitrdf.sparql.query.service.LayerModel;
+import de.leipzig.htwk.gitrdf.sparql.query.service.MaterializedViewStore;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ModelLayer;
+import de.leipzig.htwk.gitrdf.sparql.query.service.OrderAccessLog;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ParsedQuery;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ParsedQueryCache;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryCancellation;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryCostEstimator;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryCursor;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryCursorStore;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryExecutor;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryMetrics;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryResponse;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryResultCache;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryScheduler;
 import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryView;
+import de.leipzig.htwk.gitrdf.sparql.query.service.TdbLayerStore;
+import de.leipzig.htwk.gitrdf.sparql.query.service.ResultFormat;
 import de.leipzig.htwk.gitrdf.sparql.query.service.TripleStoreManager;
-import jakarta.persistence.EntityManager;
+import de.leipzig.htwk.gitrdf.sparql.query.utils.FutureUtils;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -45,369 +61,460 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class SparqlQueryServiceImpl {
 
-    private final int FIFTY_MEGABYTE = 1024 * 1024 * 50;
-    private final int BUFFER_SIZE = FIFTY_MEGABYTE;
-    private final String TURTLE_FORMAT = "TURTLE";
+    // multi-order queries queue up as one order, so they take turns with the single order queries
+    private static final long MULTI_ORDER_SCHEDULER_KEY = -1;
 
-    private final EntityManager entityManager;
-    private final GithubRepositoryOrderAnalysisRepository analysisRepository;
     private final TripleStoreManager tripleStoreManager;
+    private final LayerModelLoader layerModelLoader;
+    private final QueryResultCache queryResultCache;
+    private final ParsedQueryCache parsedQueryCache;
+    private final QueryProperties queryProperties;
+    private final QueryScheduler queryScheduler;
+    private final QueryMetrics queryMetrics;
+    private final MaterializedViewStore materializedViewStore;
+    private final OrderAccessLog orderAccessLog;
+    private final QueryCursorStore queryCursorStore;
+    private final QueryExecutor queryExecutor;
+    private final QueryCostEstimator queryCostEstimator;
+    private final TdbLayerStore tdbLayerStore;
+
+    // layer loads mostly wait for the database, the cpu heavy parsing is bounded inside the loader
+    private final ExecutorService layerLoadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+
+    public QueryResponse performSparqlQuery(long entryId, String queryString, Duration timeout,
+            String acceptHeader) throws SQLException, IOException {
+        return performSparqlQuery(entryId, queryString, QueryType.BASIC, timeout, acceptHeader);
+    }
 
+    public QueryResponse performSparqlQueryCombined(long entryId, String queryString, Duration timeout,
+            String acceptHeader) throws SQLException, IOException {
+        return performSparqlQuery(entryId, queryString, QueryType.COMBINED, timeout, acceptHeader);
+    }
 
-    @Transactional(rollbackFor = { SQLException.class, IOException.class })
-    public File performSparqlQuery(long entryId, String queryString) throws SQLException, IOException {
-        File resultRdfFile = File.createTempFile("json-result-rdf-file", "json");
+    public QueryResponse performSparqlQueryAnalysisData(long entryId, String queryString, Duration timeout,
+            String acceptHeader) throws SQLException, IOException {
+        return performSparqlQuery(entryId, queryString, QueryType.ANALYSIS, timeout, acceptHeader);
+    }
 
-        // Check if model exists in store manager first
-        Model combinedModel = tripleStoreManager.getStore(entryId, QueryType.BASIC).orElse(null);
-        
-        if (combinedModel == null) {
-            // Load from database if not in store manager
-            GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = entityManager
-                    .find(GithubRepositoryOrderEntityLobs.class, entryId);
+    public QueryResponse performSparqlQueryExpertData(long entryId, String queryString, Duration timeout,
+            String acceptHeader) throws SQLException, IOException {
+        return performSparqlQuery(entryId, queryString, QueryType.EXPERT, timeout, acceptHeader);
+    }
 
-            if (githubRepositoryOrderEntityLobs == null) {
-                throw NotFoundException.githubEntryNotFound(entryId);
-            }
+    public QueryResponse performSparqlQueryAllData(long entryId, String queryString, Duration timeout,
+            String acceptHeader) throws SQLException, IOException {
+        return performSparqlQuery(entryId, queryString, QueryType.ALL, timeout, acceptHeader);
+    }
 
-            GithubRepositoryOrderEntity githubRepositoryOrderEntity = githubRepositoryOrderEntityLobs.getOrderEntity();
+    private QueryResponse performSparqlQuery(long entryId, String queryString, QueryType queryType, Duration requestedTimeout,
+            String acceptHeader) throws SQLException, IOException {
 
-            if (!githubRepositoryOrderEntity.getStatus().equals(GitRepositoryOrderStatus.DONE)) {
-                throw BadRequestException.githubToRdfConversionNotDone(entryId);
-            }
+        Duration timeout = queryProperties.resolveTimeout(queryType, requestedTimeout);
 
-            try {
-                Model baseModel = loadBaseGitRdfModel(githubRepositoryOrderEntityLobs);
-                Model statisticsModel = loadAnalysisRdfModel(entryId, AnalysisType.STATISTIC);
-                combinedModel = ModelFactory.createUnion(baseModel, statisticsModel);
-                
-                // Store the combined model for future use
-                tripleStoreManager.putStore(entryId, QueryType.BASIC, combinedModel);
-                
-                log.info("Loaded and cached new model for order {} with BASIC query type", entryId);
-            } catch (Exception e) {
-                log.error("SPARQL query failed for order {}: {}", entryId, e.getMessage());
-                throw e;
-            }
-        } else {
-            log.debug("Using cached model for order {} with BASIC query type", entryId);
-        }
+        // read before the view is composed, a layer removed afterwards makes the result stale
+        long cacheGeneration = queryResultCache.getGeneration(entryId);
 
+        // composing the view also marks its layers as recently used, even if the result is cached
+        QueryView queryView = getOrLoadQueryView(entryId, queryType);
         try {
-            Query rdfQuery = QueryFactory.create(queryString);
-            executeQuery(rdfQuery, combinedModel, resultRdfFile);
-        } catch (Exception e) {
-            log.error("SPARQL query execution failed for order {}: {}", entryId, e.getMessage());
+            return performSparqlQuery(entryId, queryString, queryType, queryView, timeout, cacheGeneration, acceptHeader);
+        } catch (Throwable e) {
+            queryView.release();
             throw e;
         }
-
-        return resultRdfFile;
     }
 
-    @Transactional(rollbackFor = { SQLException.class, IOException.class })
-    public File performSparqlQueryCombined(long entryId, String queryString) throws SQLException, IOException {
-        File resultRdfFile = File.createTempFile("json-result-rdf-file", "json");
+    // The view is released by the evaluation, or right away if the query is rejected or its result is cached.
+    private QueryResponse performSparqlQuery(long entryId, String queryString, QueryType queryType, QueryView queryView,
+            Duration timeout, long cacheGeneration, String acceptHeader) throws IOException {
 
-        // Check if model exists in store manager first
-        Model combinedModel = tripleStoreManager.getStore(entryId, QueryType.COMBINED).orElse(null);
-        
-        if (combinedModel == null) {
-            // Load from database if not in store manager
-            GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = entityManager
-                    .find(GithubRepositoryOrderEntityLobs.class, entryId);
+        // only orders that exist and are converted are counted, unknown ids would flood the access log
+        orderAccessLog.recordAccess(entryId);
 
-            if (githubRepositoryOrderEntityLobs == null) {
-                throw NotFoundException.githubEntryNotFound(entryId);
-            }
+        ParsedQuery parsedQuery = parseQuery(entryId, queryString);
 
-            GithubRepositoryOrderEntity githubRepositoryOrderEntity = githubRepositoryOrderEntityLobs.getOrderEntity();
+        boolean graphResult = parsedQuery.query().isConstructType() || parsedQuery.query().isDescribeType();
+        ResultFormat resultFormat = ResultFormat.fromAcceptHeader(acceptHeader, graphResult);
 
-            if (!githubRepositoryOrderEntity.getStatus().equals(GitRepositoryOrderStatus.DONE)) {
-                throw BadRequestException.githubToRdfConversionNotDone(entryId);
-            }
+        if (parsedQuery.query().isAskType() && !resultFormat.supportsAskResults()) {
+            throw BadRequestException.askResultFormatNotSupported(resultFormat);
+        }
+
+        queryCostEstimator.checkCost(parsedQuery, List.of(queryView), false);
+
+        // the serialized query is the same for queries differing only in whitespace, comments or prefix layout
+        QueryResultCache.Key cacheKey = new QueryResultCache.Key(entryId, queryType, parsedQuery.normalizedQuery(), resultFormat);
+
+        Optional<byte[]> cachedResult = queryResultCache.get(cacheKey);
+        queryMetrics.recordResultCacheLookup(queryType, cachedResult.isPresent());
 
-            try {
-                Model baseModel = loadBaseGitRdfModel(githubRepositoryOrderEntityLobs);
-                Model ratingsModel = loadAnalysisRdfModel(entryId, AnalysisType.RATING);
-                Model statisticsModel = loadAnalysisRdfModel(entryId, AnalysisType.STATISTIC);
-                combinedModel = ModelFactory.createUnion(baseModel, ratingsModel);
-                combinedModel = ModelFactory.createUnion(combinedModel, statisticsModel);
-                
-                // Store the combined model for future use
-                tripleStoreManager.putStore(entryId, QueryType.COMBINED, combinedModel);
-                
-                log.info("Loaded and cached new model for order {} with COMBINED query type", entryId);
+        if (cachedResult.isPresent()) {
+            log.debug("Serving cached {} result for order {}", queryType, entryId);
+            queryView.release();
+            return new QueryResponse(resultFormat, outputStream -> outputStream.write(cachedResult.get()));
+        }
+
+        // acquired before the response starts, so rejections still turn into a 429, and held until the result
+        // is written completely, unless a slow client moves the query to a streaming slot
+        QueryScheduler.Permit permit = queryScheduler.acquire(entryId);
+
+        // the query is executed lazily while the response is written, bindings are piped straight to the client
+        return new QueryResponse(resultFormat, outputStream -> {
+            try (permit) {
+                queryExecutor.stream(resultStream -> {
+                    QueryResultCache.CapturingOutputStream capturingOutputStream = queryResultCache.capture(resultStream);
+                    executeQuery(parsedQuery, List.of(queryView), () -> DatasetFactory.create(queryView.getModel()),
+                            queryType, timeout, resultFormat, capturingOutputStream);
+                    capturingOutputStream.getCaptured()
+                            .ifPresent(result -> queryResultCache.put(cacheKey, cacheGeneration, result));
+                }, timeout, permit.watchClient(outputStream));
+            } catch (QueryCancelledException e) {
+                throw handleCancelledQuery(entryId, timeout, e);
             } catch (Exception e) {
-                log.error("SPARQL query failed for order {}: {}", entryId, e.getMessage());
+                log.error("SPARQL query execution failed for order {}: {}", entryId, e.getMessage());
                 throw e;
+            } finally {
+                // in case the evaluation never started
+                queryView.release();
             }
-        } else {
-            log.debug("Using cached model for order {} with COMBINED query type", entryId);
+        });
+    }
+
+    // Every order's view becomes the named graph of the order in one dataset, so a single query can compare
+    // repositories with GRAPH patterns. The views are composed of the shared cached layers, concurrently per order.
+    public QueryResponse performSparqlQueryOnOrders(List<Long> entryIds, QueryType queryType, String queryString,
+            Duration requestedTimeout, String acceptHeader) throws SQLException, IOException {
+
+        int maxOrders = queryProperties.getMultiOrder().getMaxOrders();
+        if (entryIds.size() > maxOrders) {
+            throw BadRequestException.tooManyIds(entryIds.size(), maxOrders);
+        }
+
+        Duration timeout = queryProperties.resolveTimeout(queryType, requestedTimeout);
+
+        List<CompletableFuture<QueryView>> queryViewFutures = new ArrayList<>();
+        for (long entryId : entryIds) {
+            CompletableFuture<QueryView> queryViewFuture = new CompletableFuture<>();
+            layerLoadExecutor.execute(() -> {
+                try {
+                    queryViewFuture.complete(getOrLoadQueryView(entryId, queryType));
+                } catch (Throwable e) {
+                    queryViewFuture.completeExceptionally(e);
+                }
+            });
+            queryViewFutures.add(queryViewFuture);
         }
 
         try {
-            Query rdfQuery = QueryFactory.create(queryString);
-            executeQuery(rdfQuery, combinedModel, resultRdfFile);
-        } catch (Exception e) {
-            log.error("SPARQL query execution failed for order {}: {}", entryId, e.getMessage());
+            List<QueryView> queryViews = new ArrayList<>();
+            for (Future<QueryView> queryViewFuture : queryViewFutures) {
+                queryViews.add(FutureUtils.getUnwrapped(queryViewFuture));
+            }
+
+            return performSparqlQueryOnOrders(entryIds, queryType, queryString, queryViews, timeout, acceptHeader);
+        } catch (Throwable e) {
+            // views of other orders may still be composed
+            queryViewFutures.forEach(queryViewFuture -> queryViewFuture.thenAccept(QueryView::release));
             throw e;
         }
-
-        return resultRdfFile;
     }
 
-    @Transactional(rollbackFor = { SQLException.class, IOException.class })
-    public File performSparqlQueryAnalysisData(long entryId, String queryString) throws SQLException, IOException {
-        File resultRdfFile = File.createTempFile("json-result-rdf-file", "json");
+    private QueryResponse performSparqlQueryOnOrders(List<Long> entryIds, QueryType queryType, String queryString,
+            List<QueryView> queryViews, Duration timeout, String acceptHeader) throws IOException {
 
-        // Check if model exists in store manager first
-        Model analysisModel = tripleStoreManager.getStore(entryId, QueryType.ANALYSIS).orElse(null);
-        
-        if (analysisModel == null) {
-            // Load from database if not in store manager
-            GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = entityManager
-                    .find(GithubRepositoryOrderEntityLobs.class, entryId);
+        entryIds.forEach(orderAccessLog::recordAccess);
 
-            if (githubRepositoryOrderEntityLobs == null) {
-                throw NotFoundException.githubEntryNotFound(entryId);
-            }
+        ParsedQuery parsedQuery;
+        try {
+            parsedQuery = parsedQueryCache.getOrParse(queryString);
+        } catch (Exception e) {
+            log.error("SPARQL query parsing failed for orders {}: {}", entryIds, e.getMessage());
+            throw e;
+        }
 
-            GithubRepositoryOrderEntity githubRepositoryOrderEntity = githubRepositoryOrderEntityLobs.getOrderEntity();
+        boolean graphResult = parsedQuery.query().isConstructType() || parsedQuery.query().isDescribeType();
+        ResultFormat resultFormat = ResultFormat.fromAcceptHeader(acceptHeader, graphResult);
 
-            if (!githubRepositoryOrderEntity.getStatus().equals(GitRepositoryOrderStatus.DONE)) {
-                throw BadRequestException.githubToRdfConversionNotDone(entryId);
-            }
+        if (parsedQuery.query().isAskType() && !resultFormat.supportsAskResults()) {
+            throw BadRequestException.askResultFormatNotSupported(resultFormat);
+        }
+
+        queryCostEstimator.checkCost(parsedQuery, queryViews, false);
+
+        // results aren't cached, the cache is invalidated per order
+        QueryScheduler.Permit permit = queryScheduler.acquire(MULTI_ORDER_SCHEDULER_KEY);
 
-            try {
-                Model ratingsModel = loadAnalysisRdfModel(entryId, AnalysisType.RATING);
-                Model statisticsModel = loadAnalysisRdfModel(entryId, AnalysisType.STATISTIC);
-                analysisModel = ModelFactory.createUnion(ratingsModel, statisticsModel);
-                
-                // Store the combined model for future use
-                tripleStoreManager.putStore(entryId, QueryType.ANALYSIS, analysisModel);
-                
-                log.info("Loaded and cached new model for order {} with ANALYSIS query type", entryId);
+        return new QueryResponse(resultFormat, outputStream -> {
+            try (permit) {
+                queryExecutor.stream(resultStream -> executeQuery(parsedQuery, queryViews, () -> QueryView.composeDataset(queryViews),
+                        queryType, timeout, resultFormat, resultStream), timeout, permit.watchClient(outputStream));
+            } catch (QueryCancelledException e) {
+                throw handleCancelledQuery("orders " + entryIds, QueryTimeoutException.multiOrderQueryTimedOut(entryIds, timeout), timeout, e);
             } catch (Exception e) {
-                log.error("SPARQL query failed for order {}: {}", entryId, e.getMessage());
+                log.error("SPARQL query execution failed for orders {}: {}", entryIds, e.getMessage());
                 throw e;
+            } finally {
+                queryViews.forEach(QueryView::release);
             }
-        } else {
-            log.debug("Using cached model for order {} with ANALYSIS query type", entryId);
+        });
+    }
+
+    // Returns the first page of the result, the remaining solutions stay open behind a cursor
+    // and are fetched page by page without evaluating the query again.
+    public QueryResponse performSparqlQueryWithCursor(long entryId, String queryString, Duration requestedTimeout,
+            String acceptHeader, int pageSize) throws SQLException, IOException {
+
+        QueryType queryType = QueryType.BASIC;
+
+        int maxPageSize = queryProperties.getCursor().getMaxPageSize();
+        if (pageSize > maxPageSize) {
+            throw BadRequestException.pageSizeTooLarge(pageSize, maxPageSize);
         }
 
+        Duration timeout = queryProperties.resolveTimeout(queryType, requestedTimeout);
+
+        QueryView queryView = getOrLoadQueryView(entryId, queryType);
         try {
-            Query rdfQuery = QueryFactory.create(queryString);
-            executeQuery(rdfQuery, analysisModel, resultRdfFile);
-        } catch (Exception e) {
-            log.error("SPARQL query execution failed for order {}: {}", entryId, e.getMessage());
-            throw e;
+            return performSparqlQueryWithCursor(entryId, queryString, queryType, queryView, timeout, acceptHeader, pageSize);
+        } finally {
+            // a spilled result released it already, a live result of in-memory layers doesn't hold it
+            queryView.release();
         }
-
-        return resultRdfFile;
     }
 
-    @Transactional(rollbackFor = { SQLException.class, IOException.class })
-    public File performSparqlQueryExpertData(long entryId, String queryString) throws SQLException, IOException {
-        File resultRdfFile = File.createTempFile("json-result-rdf-file", "json");
+    private QueryResponse performSparqlQueryWithCursor(long entryId, String queryString, QueryType queryType,
+            QueryView queryView, Duration timeout, String acceptHeader, int pageSize) throws SQLException, IOException {
 
-        // Check if model exists in store manager first
-        Model combinedModel = tripleStoreManager.getStore(entryId, QueryType.EXPERT).orElse(null);
-        
-        if (combinedModel == null) {
-            // Load from database if not in store manager
-            GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = entityManager
-                    .find(GithubRepositoryOrderEntityLobs.class, entryId);
+        orderAccessLog.recordAccess(entryId);
+        ParsedQuery parsedQuery = parseQuery(entryId, queryString);
 
-            if (githubRepositoryOrderEntityLobs == null) {
-                throw NotFoundException.githubEntryNotFound(entryId);
-            }
+        if (!parsedQuery.query().isSelectType()) {
+            throw BadRequestException.cursorRequiresSelectQuery();
+        }
 
-            GithubRepositoryOrderEntity githubRepositoryOrderEntity = githubRepositoryOrderEntityLobs.getOrderEntity();
+        queryCostEstimator.checkCost(parsedQuery, List.of(queryView), true);
 
-            if (!githubRepositoryOrderEntity.getStatus().equals(GitRepositoryOrderStatus.DONE)) {
-                throw BadRequestException.githubToRdfConversionNotDone(entryId);
-            }
+        ResultFormat resultFormat = ResultFormat.fromAcceptHeader(acceptHeader, false);
 
-            try {
-                Model baseModel = loadBaseGitRdfModel(githubRepositoryOrderEntityLobs);
-                Model expertModel = loadAnalysisRdfModel(entryId, AnalysisType.EXPERT);
-                combinedModel = ModelFactory.createUnion(baseModel, expertModel);
-                
-                // Store the combined model for future use
-                tripleStoreManager.putStore(entryId, QueryType.EXPERT, combinedModel);
-                
-                log.info("Loaded and cached new model for order {} with EXPERT query type", entryId);
-            } catch (Exception e) {
-                log.error("SPARQL query failed for order {}: {}", entryId, e.getMessage());
-                throw e;
-            }
-        } else {
-            log.debug("Using cached model for order {} with EXPERT query type", entryId);
-        }
+        // the cursor slot is reserved first, a rejection must not cost an evaluation
+        try (QueryCursorStore.Reservation reservation = queryCursorStore.reserve();
+                QueryScheduler.Permit permit = queryScheduler.acquire(entryId)) {
+            // evaluated up to the end of the first page before the response starts
+            return queryExecutor.execute(() -> {
+                QueryCursor cursor;
+                try {
+                    cursor = openCursor(entryId, queryType, parsedQuery, queryView, timeout, pageSize);
+                } catch (QueryCancelledException e) {
+                    throw handleCancelledQuery(entryId, timeout, e);
+                }
 
-        try {
-            Query rdfQuery = QueryFactory.create(queryString);
-            executeQuery(rdfQuery, combinedModel, resultRdfFile);
-        } catch (Exception e) {
-            log.error("SPARQL query execution failed for order {}: {}", entryId, e.getMessage());
-            throw e;
-        }
+                reservation.register(cursor);
 
-        return resultRdfFile;
+                // a layer removed before the cursor was registered closed no cursor, this one goes after its first page
+                if (cursor.getQueryExecution() != null
+                        && !tripleStoreManager.isCached(entryId, queryType, queryView.getLayerModels())) {
+                    cursor.markStale();
+                }
+
+                return readCursorPage(cursor, timeout, resultFormat);
+            });
+        }
     }
 
-    @Transactional(rollbackFor = { SQLException.class, IOException.class })
-    public File performSparqlQueryAllData(long entryId, String queryString) throws SQLException, IOException {
-        File resultRdfFile = File.createTempFile("json-result-rdf-file", "json");
+    public QueryResponse fetchCursorPage(String cursorId, Duration requestedTimeout, String acceptHeader)
+            throws SQLException, IOException {
+        QueryCursor cursor = queryCursorStore.get(cursorId)
+                .orElseThrow(() -> NotFoundException.cursorNotFound(cursorId));
 
-        // Check if model exists in store manager first
-        Model combinedModel = tripleStoreManager.getStore(entryId, QueryType.ALL).orElse(null);
-        
-        if (combinedModel == null) {
-            // Load from database if not in store manager
-            GithubRepositoryOrderEntityLobs githubRepositoryOrderEntityLobs = entityManager
-                    .find(GithubRepositoryOrderEntityLobs.class, entryId);
+        Duration timeout = queryProperties.resolveTimeout(cursor.getQueryType(), requestedTimeout);
+        ResultFormat resultFormat = ResultFormat.fromAcceptHeader(acceptHeader, false);
 
-            if (githubRepositoryOrderEntityLobs == null) {
-                throw NotFoundException.githubEntryNotFound(entryId);
-            }
+        try (QueryScheduler.Permit permit = queryScheduler.acquire(cursor.getOrderId())) {
+            return queryExecutor.execute(() -> readCursorPage(cursor, timeout, resultFormat));
+        }
+    }
 
-            GithubRepositoryOrderEntity githubRepositoryOrderEntity = githubRepositoryOrderEntityLobs.getOrderEntity();
+    // Views of in-memory layers keep the live result. Tdb2 read transactions are bound to their thread,
+    // so the result of views with tdb2 backed layers is spilled to a file inside the transaction instead.
+    // Spilling evaluates the whole query, the timeout bounds all of it.
+    private QueryCursor openCursor(long entryId, QueryType queryType, ParsedQuery parsedQuery, QueryView queryView,
+            Duration timeout, int pageSize) throws IOException {
 
-            if (!githubRepositoryOrderEntity.getStatus().equals(GitRepositoryOrderStatus.DONE)) {
-                throw BadRequestException.githubToRdfConversionNotDone(entryId);
-            }
-
-            try {
-                Model baseModel = loadBaseGitRdfModel(githubRepositoryOrderEntityLobs);
-                Model ratingsModel = loadAnalysisRdfModel(entryId, AnalysisType.RATING);
-                Model statisticsModel = loadAnalysisRdfModel(entryId, AnalysisType.STATISTIC);
-                Model expertModel = loadAnalysisRdfModel(entryId, AnalysisType.EXPERT);
-                
-                combinedModel = ModelFactory.createUnion(baseModel, ratingsModel);
-                combinedModel = ModelFactory.createUnion(combinedModel, statisticsModel);
-                combinedModel = ModelFactory.createUnion(combinedModel, expertModel);
-                
-                // Store the combined model for future use
-                tripleStoreManager.putStore(entryId, QueryType.ALL, combinedModel);
-                
-                log.info("Loaded and cached new model for order {} with ALL query type", entryId);
-            } catch (Exception e) {
-                log.error("SPARQL query failed for order {}: {}", entryId, e.getMessage());
-                throw e;
-            }
-        } else {
-            log.debug("Using cached model for order {} with ALL query type", entryId);
+        if (queryView.getTdbDatasets().isEmpty()) {
+            return QueryCursor.live(entryId, queryType, pageSize, parsedQuery.createExecution(queryView.getModel()));
         }
 
-        try {
-            Query rdfQuery = QueryFactory.create(queryString);
-            executeQuery(rdfQuery, combinedModel, resultRdfFile);
+        Path spillFile = queryCursorStore.createSpillFile();
+
+        queryView.beginRead();
+        try (QueryExecution queryExecution = parsedQuery.createExecution(queryView.getModel());
+                OutputStream outputStream = new BufferedOutputStream(queryCursorStore.newSpillOutputStream(spillFile))) {
+            queryExecution.setTimeout(timeout.toMillis(), timeout.toMillis());
+            ResultFormat.THRIFT.writeSelectResult(outputStream, queryExecution.execSelect());
         } catch (Exception e) {
-            log.error("SPARQL query execution failed for order {}: {}", entryId, e.getMessage());
+            Files.deleteIfExists(spillFile);
             throw e;
+        } finally {
+            queryView.endRead();
         }
 
-        return resultRdfFile;
-    }
-
+        log.debug("Spilled cursor result of order {} to '{}'", entryId, spillFile);
 
-    private Model loadBaseGitRdfModel(GithubRepositoryOrderEntityLobs lobs)
-            throws SQLException, IOException {
-        Model baseModel = ModelFactory.createDefaultModel();
-        File tempRdfFile = null;
+        return QueryCursor.spilled(entryId, queryType, pageSize, spillFile);
+    }
 
+    // The page is read before the response starts, so whether another page follows is known for the headers.
+    private QueryResponse readCursorPage(QueryCursor cursor, Duration timeout, ResultFormat resultFormat) {
+        QueryCursor.Page page;
         try {
-            tempRdfFile = createTempRdfFile(lobs.getRdfFile());
-            baseModel.read(tempRdfFile.getAbsolutePath(), TURTLE_FORMAT);
-        } finally {
-            if (tempRdfFile != null) {
-                FileUtils.deleteQuietly(tempRdfFile);
-            }
+            page = queryCursorStore.readPage(cursor, timeout);
+        } catch (QueryCancelledException e) {
+            throw handleCancelledQuery(cursor.getOrderId(), timeout, e);
         }
 
-        return baseModel;
+        ResultSet pageResultSet = new ResultSetStream(cursor.getResultVars(), null, page.bindings().iterator());
+        String nextCursorId = page.hasMore() ? cursor.getId() : null;
+
+        return new QueryResponse(resultFormat, outputStream -> {
+            resultFormat.writeSelectResult(outputStream, pageResultSet);
+            outputStream.flush();
+        }, nextCursorId);
     }
 
-    private Model loadAnalysisRdfModel(long entryId, AnalysisType analysisType) throws SQLException, IOException {
-        Model analysisModel = ModelFactory.createDefaultModel();
-        List<GithubRepositoryOrderAnalysisEntity> analyses = analysisRepository
-                .findAllByGithubRepositoryOrderIdAndAnalysisType(entryId, analysisType);
+    private ParsedQuery parseQuery(long entryId, String queryString) {
+        try {
+            return parsedQueryCache.getOrParse(queryString);
+        } catch (Exception e) {
+            log.error("SPARQL query parsing failed for order {}: {}", entryId, e.getMessage());
+            throw e;
+        }
+    }
 
-        for (GithubRepositoryOrderAnalysisEntity analysis : analyses) {
-            try {
-                Model singleAnalysisModel = loadModelFromBlob(analysis.getRdfBlob());
-                analysisModel.add(singleAnalysisModel);
-            } catch (Exception e) {
-                log.warn("Failed to load {} RDF for analysis ID {} (metricId: {})", 
-                        analysisType.name().toLowerCase(), analysis.getId(), analysis.getMetricId());
+    // The view holds the tdb2 database of its layers until it is released. Layers whose database was released
+    // after they were looked up are no longer cached, the view is composed again of the reloaded layers then.
+    private QueryView getOrLoadQueryView(long entryId, QueryType queryType) throws SQLException, IOException {
+        while (true) {
+            QueryView queryView = composeQueryView(entryId, queryType);
+            if (tdbLayerStore.retain(queryView)) {
+                return queryView;
             }
-        }
 
-        log.debug("Loaded {} {} analysis entries for repository order {}", 
-                analyses.size(), analysisType.name().toLowerCase(), entryId);
-        return analysisModel;
+            log.debug("Composing {} view for order {} again, its tdb2 database was released", queryType, entryId);
+        }
     }
 
-    private Model loadModelFromBlob(Blob rdfBlob) throws SQLException, IOException {
-        if (rdfBlob == null) {
-            return ModelFactory.createDefaultModel();
-        }
+    // Every layer is cached once per order and shared by all views containing it,
+    // the view itself is only a cheap union over the cached layer models.
+    // Missing layers are loaded concurrently, each in its own transaction.
+    private QueryView composeQueryView(long entryId, QueryType queryType) throws SQLException, IOException {
+        List<Future<LayerModel>> layerModelFutures = new ArrayList<>();
 
-        Model model = ModelFactory.createDefaultModel();
-        try (InputStream inputStream = new BufferedInputStream(rdfBlob.getBinaryStream());
-                StringWriter writer = new StringWriter()) {
+        for (ModelLayer layer : queryType.getLayers()) {
+            Optional<LayerModel> cachedLayerModel = tripleStoreManager.getStore(entryId, layer);
+            queryMetrics.recordLayerLookup(queryType, layer, cachedLayerModel.isPresent());
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int length;
-            while ((length = inputStream.read(buffer)) != -1) {
-                writer.write(new String(buffer, 0, length));
-            }
+            layerModelFutures.add(cachedLayerModel.isPresent()
+                    ? CompletableFuture.completedFuture(cachedLayerModel.get())
+                    : layerLoadExecutor.submit(() -> tripleStoreManager.getOrLoad(
+                            entryId, layer, () -> layerModelLoader.loadLayerModel(entryId, layer))));
+        }
 
-            try (StringReader reader = new StringReader(writer.toString())) {
-                model.read(reader, null, TURTLE_FORMAT);
-            }
+        List<LayerModel> layerModels = new ArrayList<>();
+        for (Future<LayerModel> layerModelFuture : layerModelFutures) {
+            layerModels.add(FutureUtils.getUnwrapped(layerModelFuture));
         }
 
-        return model;
+        long unionStart = System.nanoTime();
+        QueryView queryView = materializedViewStore.isMaterialized(queryType) && QueryView.isMaterializable(layerModels)
+                ? QueryView.materialized(entryId, queryType, layerModels,
+                        materializedViewStore.getOrBuild(entryId, queryType, layerModels))
+                : QueryView.of(entryId, queryType, layerModels);
+        queryMetrics.recordUnionBuild(queryType, System.nanoTime() - unionStart);
+
+        log.debug("Composed {} view for order {}", queryType, entryId);
+
+        return queryView;
     }
 
+    // The dataset is composed inside the read transactions of the views, tdb2 backed layers can't be read outside of them.
+    private void executeQuery(ParsedQuery parsedQuery, List<QueryView> queryViews, Supplier<Dataset> datasetSupplier,
+            QueryType queryType, Duration timeout, ResultFormat resultFormat, OutputStream outputStream) throws IOException {
 
-    private void executeQuery(Query rdfQuery, Model model, File resultFile) throws IOException {
-        if (rdfQuery.isAskType()) {
-            try (QueryExecution queryExecution = QueryExecutionFactory.create(rdfQuery, model)) {
+        Optional<QueryCancellation> cancellation = QueryCancellation.current();
+        long executionStart = System.nanoTime();
+        boolean evaluated = false;
+
+        queryViews.forEach(QueryView::beginRead);
+        try (QueryExecution queryExecution = parsedQuery.createExecution(datasetSupplier.get())) {
+            queryExecution.setTimeout(timeout.toMillis(), queryProperties.resolveStreamTimeout(timeout).toMillis());
+            cancellation.ifPresent(queryCancellation -> queryCancellation.attach(queryExecution));
+            Query query = parsedQuery.query();
+            if (query.isAskType()) {
                 boolean askResult = queryExecution.execAsk();
-                writeSimpleStringToFile(askResult ? "yes" : "no", resultFile);
-            }
-        } else {
-            try (QueryExecution queryExecution = QueryExecutionFactory.create(rdfQuery, model);
-                    OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(resultFile))) {
+                evaluated = true;
+                queryMetrics.recordExecution(queryType, "success", System.nanoTime() - executionStart);
+
+                resultFormat.writeAskResult(outputStream, askResult);
+            } else if (query.isConstructType() || query.isDescribeType()) {
+                // triples are produced while they are written, describe collects the description of each resource first
+                Iterator<Triple> triples = query.isConstructType()
+                        ? queryExecution.execConstructTriples()
+                        : queryExecution.execDescribeTriples();
+                cancellation.ifPresent(QueryCancellation::started);
+                triples.hasNext();
+                evaluated = true;
+                queryMetrics.recordExecution(queryType, "success", System.nanoTime() - executionStart);
+
+                long serializationStart = System.nanoTime();
+                resultFormat.writeGraphResult(outputStream, triples, query.getPrefixMapping());
+                queryMetrics.recordSerialization(queryType, System.nanoTime() - serializationStart);
+            } else {
                 ResultSet resultSet = queryExecution.execSelect();
-                ResultSetFormatter.outputAsJSON(outputStream, resultSet);
+                cancellation.ifPresent(QueryCancellation::started);
+                // the result set looks ahead, so this evaluates up to the first solution without consuming it
+                resultSet.hasNext();
+                evaluated = true;
+                queryMetrics.recordExecution(queryType, "success", System.nanoTime() - executionStart);
+
+                long serializationStart = System.nanoTime();
+                resultFormat.writeSelectResult(outputStream, resultSet);
+                queryMetrics.recordSerialization(queryType, System.nanoTime() - serializationStart);
             }
+        } catch (QueryCancelledException e) {
+            if (!evaluated) {
+                queryMetrics.recordExecution(queryType, "cancelled", System.nanoTime() - executionStart);
+            }
+            throw e;
+        } finally {
+            cancellation.ifPresent(QueryCancellation::detach);
+            queryViews.forEach(QueryView::endRead);
         }
+
+        outputStream.flush();
     }
 
-    private File createTempRdfFile(Blob rdfBlob) throws IOException, SQLException {
-        File tempRdfFile = File.createTempFile("temp-rdf-file", ".ttl");
+    // Jena reports both a timeout and an abort as a cancelled query.
+    private RuntimeException handleCancelledQuery(long entryId, Duration timeout, QueryCancelledException e) {
+        return handleCancelledQuery("order " + entryId, QueryTimeoutException.queryTimedOut(entryId, timeout), timeout, e);
+    }
 
-        try (InputStream inputStream = new BufferedInputStream(rdfBlob.getBinaryStream());
-                OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempRdfFile))) {
+    private RuntimeException handleCancelledQuery(String orders, QueryTimeoutException timeoutException, Duration timeout,
+            QueryCancelledException e) {
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int length;
-            while ((length = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, length);
-            }
+        boolean abortedByClient = QueryCancellation.current().map(QueryCancellation::isCancelled).orElse(false);
+
+        if (abortedByClient) {
+            log.info("SPARQL query execution for {} was aborted, the client is gone", orders);
+            return e;
         }
 
-        return tempRdfFile;
+        log.warn("SPARQL query execution for {} exceeded its timeout of {}", orders, timeout);
+        return timeoutException;
     }
 
-
-    private void writeSimpleStringToFile(String content, File file) throws IOException {
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(content);
-        }
+    @PreDestroy
+    public void shutdown() {
+        layerLoadExecutor.shutdownNow();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package de.leipzig.htwk.gitrdf.sparql.query.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class FutureUtils {
+
+    // Waits for the future and rethrows the original failure, so callers see the same exception as the loading thread.
+    public static <T> T getUnwrapped(Future<T> future) throws SQLException, IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a pending result");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+
+            throw new IllegalStateException("Pending result failed", cause);
+        }
+    }
+
+}
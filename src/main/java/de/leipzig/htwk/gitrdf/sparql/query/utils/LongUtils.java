@@ -1,5 +1,12 @@
 package de.leipzig.htwk.gitrdf.sparql.query.utils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
 import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -19,4 +26,22 @@ public final class LongUtils {
         }
     }
 
+    // Comma separated, duplicates are dropped while keeping the given order.
+    public static List<Long> convertStringToLongIdsOrThrowException(String longIds) {
+
+        Set<Long> ids = new LinkedHashSet<>();
+
+        for (String longId : StringUtils.split(StringUtils.defaultString(longIds), ',')) {
+            if (StringUtils.isNotBlank(longId)) {
+                ids.add(convertStringToLongIdOrThrowException(longId.trim()));
+            }
+        }
+
+        if (ids.isEmpty()) {
+            throw BadRequestException.emptyIdList();
+        }
+
+        return new ArrayList<>(ids);
+    }
+
 }
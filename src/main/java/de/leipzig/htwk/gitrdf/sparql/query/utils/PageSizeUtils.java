@@ -0,0 +1,36 @@
+package de.leipzig.htwk.gitrdf.sparql.query.utils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PageSizeUtils {
+
+    // Returns null if no page size was given, the whole result is returned at once then.
+    public static Integer convertStringToPageSizeOrThrowException(String pageSizeString) {
+
+        if (StringUtils.isBlank(pageSizeString)) {
+            return null;
+        }
+
+        int pageSize;
+        try {
+            pageSize = Integer.parseInt(pageSizeString.trim(), 10);
+        } catch (NumberFormatException ex) {
+            log.info("Couldn't convert string to page size. Exception is '{}'", ex, ex);
+            throw BadRequestException.invalidPageSize(pageSizeString);
+        }
+
+        if (pageSize <= 0) {
+            throw BadRequestException.invalidPageSize(pageSizeString);
+        }
+
+        return pageSize;
+    }
+
+}
@@ -0,0 +1,32 @@
+package de.leipzig.htwk.gitrdf.sparql.query.utils;
+
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import de.leipzig.htwk.gitrdf.sparql.query.service.QueryType;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class QueryTypeUtils {
+
+    // BASIC if not given, like the single order /rdf/query endpoints
+    public static QueryType convertStringToQueryTypeOrThrowException(String queryType) {
+
+        if (StringUtils.isBlank(queryType)) {
+            return QueryType.BASIC;
+        }
+
+        try {
+            return QueryType.valueOf(queryType.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            log.info("Couldn't convert string to query type. Exception is '{}'", ex, ex);
+            throw BadRequestException.invalidQueryType(queryType);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package de.leipzig.htwk.gitrdf.sparql.query.utils;
+
+import java.time.Duration;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TimeoutUtils {
+
+    // Returns null if no timeout was given, the endpoint default applies then.
+    public static Duration convertSecondsToTimeoutOrThrowException(String timeoutSeconds) {
+
+        if (StringUtils.isBlank(timeoutSeconds)) {
+            return null;
+        }
+
+        long seconds;
+        try {
+            seconds = Long.parseLong(timeoutSeconds.trim(), 10);
+        } catch (NumberFormatException ex) {
+            log.info("Couldn't convert string to timeout. Exception is '{}'", ex, ex);
+            throw BadRequestException.invalidTimeout(timeoutSeconds);
+        }
+
+        if (seconds <= 0) {
+            throw BadRequestException.invalidTimeout(timeoutSeconds);
+        }
+
+        return Duration.ofSeconds(seconds);
+    }
+
+}
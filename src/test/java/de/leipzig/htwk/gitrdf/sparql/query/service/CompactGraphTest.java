@@ -0,0 +1,133 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Test;
+
+class CompactGraphTest {
+
+    private static final Node MISSING_IRI = NodeFactory.createURI("urn:test:missing");
+
+    @Test
+    void findMatchesGraphMemForEveryBindingCombination() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 20; round++) {
+            List<Node> subjects = terms(random, "urn:test:s", 1 + random.nextInt(30), false);
+            List<Node> predicates = terms(random, "urn:test:p", 1 + random.nextInt(6), false);
+            List<Node> objects = new ArrayList<>(terms(random, "urn:test:o", 1 + random.nextInt(30), true));
+            // terms used both as subject and object, like linked resources
+            objects.addAll(subjects.subList(0, Math.min(5, subjects.size())));
+
+            Graph expected = Factory.createGraphMem();
+            CompactGraph.Builder builder = CompactGraph.builder();
+
+            int triples = random.nextInt(500);
+            for (int i = 0; i < triples; i++) {
+                Triple triple = Triple.create(pick(random, subjects), pick(random, predicates), pick(random, objects));
+                expected.add(triple);
+                builder.add(triple);
+            }
+
+            CompactGraph actual = builder.build();
+
+            assertThat(actual.size()).isEqualTo(expected.size());
+
+            for (int i = 0; i < 50; i++) {
+                Node subject = patternTerm(random, subjects);
+                Node predicate = patternTerm(random, predicates);
+                Node object = patternTerm(random, objects);
+
+                // every combination of bound and unbound positions
+                for (int bound = 0; bound < 8; bound++) {
+                    assertSameMatches(expected, actual,
+                            (bound & 1) != 0 ? subject : Node.ANY,
+                            (bound & 2) != 0 ? predicate : Node.ANY,
+                            (bound & 4) != 0 ? object : Node.ANY);
+                }
+
+                assertThat(actual.getStatisticsHandler().getStatistic(Node.ANY, predicate, Node.ANY))
+                        .as("statistic(ANY, %s, ANY)", predicate)
+                        .isEqualTo(expected.find(Node.ANY, predicate, Node.ANY).toList().size());
+            }
+        }
+    }
+
+    @Test
+    void findOnEmptyGraphMatchesNothing() {
+        CompactGraph graph = CompactGraph.builder().build();
+        Node term = NodeFactory.createURI("urn:test:s0");
+
+        assertThat(graph.size()).isZero();
+        assertThat(graph.isEmpty()).isTrue();
+        assertThat(graph.find(Node.ANY, Node.ANY, Node.ANY).toList()).isEmpty();
+        assertThat(graph.find(term, term, term).toList()).isEmpty();
+        assertThat(graph.contains(term, Node.ANY, Node.ANY)).isFalse();
+    }
+
+    @Test
+    void duplicateTriplesAreStoredOnce() {
+        Node subject = NodeFactory.createURI("urn:test:s0");
+        Node predicate = NodeFactory.createURI("urn:test:p0");
+        Node object = NodeFactory.createLiteral("value");
+
+        CompactGraph.Builder builder = CompactGraph.builder();
+        builder.add(Triple.create(subject, predicate, object));
+        builder.add(Triple.create(subject, predicate, object));
+        builder.add(Triple.create(subject, predicate, subject));
+        builder.add(Triple.create(subject, predicate, object));
+
+        CompactGraph graph = builder.build();
+
+        assertThat(graph.size()).isEqualTo(2);
+        assertThat(graph.find(subject, predicate, Node.ANY).toList())
+                .containsExactlyInAnyOrder(Triple.create(subject, predicate, object), Triple.create(subject, predicate, subject));
+        assertThat(graph.find(subject, predicate, object).toList()).hasSize(1);
+    }
+
+    private static void assertSameMatches(Graph expected, Graph actual, Node subject, Node predicate, Node object) {
+        List<Triple> expectedMatches = expected.find(subject, predicate, object).toList();
+
+        assertThat(actual.find(subject, predicate, object).toList())
+                .as("find(%s, %s, %s)", subject, predicate, object)
+                .containsExactlyInAnyOrderElementsOf(expectedMatches);
+        assertThat(actual.contains(subject, predicate, object))
+                .as("contains(%s, %s, %s)", subject, predicate, object)
+                .isEqualTo(!expectedMatches.isEmpty());
+    }
+
+    // Literals have distinct lexical forms and values, graph mem matches literals by value, the compact graph by term.
+    private static List<Node> terms(Random random, String prefix, int count, boolean withLiterals) {
+        List<Node> terms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (withLiterals && i % 3 == 1) {
+                terms.add(NodeFactory.createLiteral("literal " + i));
+            } else if (withLiterals && i % 3 == 2) {
+                terms.add(NodeFactory.createLiteral(Integer.toString(i), XSDDatatype.XSDinteger));
+            } else {
+                terms.add(random.nextInt(10) == 0 ? NodeFactory.createBlankNode() : NodeFactory.createURI(prefix + i));
+            }
+        }
+        return terms;
+    }
+
+    // mostly a term of the graph, sometimes one the graph doesn't contain
+    private static Node patternTerm(Random random, List<Node> terms) {
+        return random.nextInt(10) == 0 ? MISSING_IRI : pick(random, terms);
+    }
+
+    private static Node pick(Random random, List<Node> terms) {
+        return terms.get(random.nextInt(terms.size()));
+    }
+
+}
@@ -0,0 +1,128 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MaterializedViewStoreTest {
+
+    // 200 bytes per triple of memory graphs, 10 triples per layer, 20 per view
+    private static final long LAYER_BYTES = 2000;
+    private static final long VIEW_BYTES = 4000;
+
+    private TripleStoreManager tripleStoreManager;
+    private MaterializedViewStore materializedViewStore;
+
+    @BeforeEach
+    void setUp() {
+        TripleStoreProperties properties = new TripleStoreProperties();
+        properties.setGraphImplementation(TripleStoreProperties.GraphImplementation.MEMORY);
+        properties.setMaterializedViews(List.of(QueryType.BASIC));
+        // the layers of two orders and a view, short of a single byte
+        properties.setHeapBudget(DataSize.ofBytes(3 * LAYER_BYTES + VIEW_BYTES - 1));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LayerGraphFactory layerGraphFactory = new LayerGraphFactory(properties);
+
+        ApplicationEventPublisher eventPublisher = event -> {
+            if (event instanceof StoreEntryRemovedEvent storeEntryRemovedEvent) {
+                materializedViewStore.onStoreEntryRemoved(storeEntryRemovedEvent);
+            } else if (event instanceof MaterializedViewRemovedEvent materializedViewRemovedEvent) {
+                materializedViewStore.onMaterializedViewRemoved(materializedViewRemovedEvent);
+            }
+        };
+
+        tripleStoreManager = new TripleStoreManager(properties, eventPublisher, meterRegistry, layerGraphFactory);
+        materializedViewStore = new MaterializedViewStore(properties, layerGraphFactory, tripleStoreManager, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tripleStoreManager.shutdown();
+    }
+
+    @Test
+    void chargesViewToHeapBudget() throws SQLException, IOException {
+        List<LayerModel> layerModels = cacheLayers(1);
+
+        Model view = materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels);
+
+        assertThat(view.size()).isEqualTo(20);
+        assertThat(tripleStoreManager.getViewEstimatedBytes()).isEqualTo(VIEW_BYTES);
+        assertThat(tripleStoreManager.getTotalEstimatedBytes()).isEqualTo(2 * LAYER_BYTES + VIEW_BYTES);
+        assertThat(materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels)).isSameAs(view);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedView() throws SQLException, IOException, InterruptedException {
+        List<LayerModel> layerModels = cacheLayers(1);
+        Model view = materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels);
+
+        // the layers were used after the view
+        Thread.sleep(5);
+        tripleStoreManager.getStore(1, ModelLayer.BASE);
+        tripleStoreManager.getStore(1, ModelLayer.STATISTIC);
+        Thread.sleep(5);
+        tripleStoreManager.putStore(2, ModelLayer.BASE, layer("other", 10));
+
+        assertThat(tripleStoreManager.getViewEstimatedBytes()).isZero();
+        assertThat(tripleStoreManager.getTotalEstimatedBytes()).isEqualTo(3 * LAYER_BYTES);
+        assertThat(tripleStoreManager.getStore(1, ModelLayer.BASE)).isPresent();
+        assertThat(materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels)).isNotSameAs(view);
+    }
+
+    @Test
+    void dropsViewOfLayersReplacedWhileItWasBuilt() throws SQLException, IOException {
+        List<LayerModel> layerModels = cacheLayers(1);
+        // the statistic layer was reloaded before the view of the previous one was charged
+        tripleStoreManager.putStore(1, ModelLayer.STATISTIC, layer("reloaded", 10));
+
+        Model view = materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels);
+
+        assertThat(view.size()).isEqualTo(20);
+        assertThat(tripleStoreManager.getViewEstimatedBytes()).isZero();
+        assertThat(materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels)).isNotSameAs(view);
+    }
+
+    @Test
+    void removesViewWithItsLayer() throws SQLException, IOException {
+        List<LayerModel> layerModels = cacheLayers(1);
+        Model view = materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels);
+
+        tripleStoreManager.removeStore(1, ModelLayer.STATISTIC);
+
+        assertThat(tripleStoreManager.getViewEstimatedBytes()).isZero();
+        assertThat(tripleStoreManager.getTotalEstimatedBytes()).isEqualTo(LAYER_BYTES);
+        assertThat(materializedViewStore.getOrBuild(1, QueryType.BASIC, layerModels)).isNotSameAs(view);
+    }
+
+    private List<LayerModel> cacheLayers(long orderId) {
+        LayerModel base = layer("base", 10);
+        LayerModel statistic = layer("statistic", 10);
+        tripleStoreManager.putStore(orderId, ModelLayer.BASE, base);
+        tripleStoreManager.putStore(orderId, ModelLayer.STATISTIC, statistic);
+        return List.of(base, statistic);
+    }
+
+    private static LayerModel layer(String name, int triples) {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < triples; i++) {
+            model.add(model.createResource("urn:test:" + name + ":" + i), model.createProperty("urn:test:value"), "value " + i);
+        }
+        return LayerModel.inMemory(model);
+    }
+
+}
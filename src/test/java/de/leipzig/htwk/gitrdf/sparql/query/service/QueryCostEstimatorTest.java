@@ -0,0 +1,138 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QueryCostEstimatorTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final int COMMITS = 40_000;
+
+    private static final String PREFIXES = "PREFIX t: <urn:test:> ";
+    // sorted, so the LIMIT doesn't stop the evaluation early
+    private static final String SHARED_AUTHOR = PREFIXES + "SELECT * WHERE { ?a t:author ?x . ?b t:author ?x } ORDER BY ?a LIMIT 10";
+
+    private QueryProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private QueryView queryView;
+    private QueryCostEstimator queryCostEstimator;
+
+    @BeforeEach
+    void setUp() {
+        properties = new QueryProperties();
+        properties.getCostEstimation().setMaxCost(100_000_000L);
+        properties.getCostEstimation().setMaxResultsWithoutLimit(1000);
+
+        meterRegistry = new SimpleMeterRegistry();
+
+        // every commit has one of two authors
+        Graph graph = Factory.createGraphMem();
+        Node author = NodeFactory.createURI("urn:test:author");
+        for (int i = 0; i < COMMITS; i++) {
+            graph.add(Triple.create(
+                    NodeFactory.createURI("urn:test:commit" + i), author, NodeFactory.createURI("urn:test:author" + (i % 2))));
+        }
+        queryView = QueryView.of(1, QueryType.BASIC,
+                List.of(LayerModel.inMemory(ModelFactory.createModelForGraph(graph))));
+
+        queryCostEstimator = new QueryCostEstimator(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queryCostEstimator.shutdown();
+    }
+
+    @Test
+    void estimatesJoinFromDistinctValuesOfJoinVariable() {
+        // 40000 · 40000 / 2 distinct authors
+        assertThat(awaitRejection(SHARED_AUTHOR).getReason()).contains("about 800000000 intermediate solutions");
+        assertThat(meterRegistry.counter("sparql.query.rejected", "cause", "too-expensive").count()).isPositive();
+    }
+
+    @Test
+    void acceptsJoinThroughSelectivePattern() {
+        awaitRejection(SHARED_AUTHOR);
+
+        assertThatCode(() -> check(PREFIXES + "SELECT ?b WHERE { t:commit1 t:author ?x . ?b t:author ?x } ORDER BY ?b LIMIT 10"))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsCartesianProductBeforeLayerIsScanned() {
+        assertThatThrownBy(() -> check(PREFIXES + "SELECT * WHERE { ?a t:author ?x . ?b t:author ?y } ORDER BY ?a LIMIT 10"))
+                .isInstanceOfSatisfying(BadRequestException.class, e -> assertThat(e.getReason())
+                        .contains("about 1600000000 intermediate solutions")
+                        .contains("share no variable"));
+    }
+
+    @Test
+    void askStopsAtFirstSolution() {
+        assertThatCode(() -> check("ASK { ?a ?b ?c . ?d ?e ?f }")).doesNotThrowAnyException();
+
+        awaitRejection(SHARED_AUTHOR);
+
+        assertThatCode(() -> check("ASK { ?a ?b ?c . ?d ?e ?f }")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsLargeResultWithoutLimit() {
+        String query = PREFIXES + "SELECT * WHERE { ?commit t:author ?author }";
+
+        assertThatThrownBy(() -> check(query))
+                .isInstanceOfSatisfying(BadRequestException.class,
+                        e -> assertThat(e.getReason()).contains("no LIMIT"));
+        assertThatCode(() -> check(query + " LIMIT 10")).doesNotThrowAnyException();
+        assertThatCode(() -> queryCostEstimator.checkCost(ParsedQuery.parse(query), List.of(queryView), true))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void acceptsEverythingWhenDisabled() {
+        properties.getCostEstimation().setEnabled(false);
+        QueryCostEstimator disabled = new QueryCostEstimator(properties, meterRegistry);
+
+        try {
+            assertThatCode(() -> disabled.checkCost(ParsedQuery.parse(SHARED_AUTHOR), List.of(queryView), false))
+                    .doesNotThrowAnyException();
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    private void check(String query) {
+        queryCostEstimator.checkCost(ParsedQuery.parse(query), List.of(queryView), false);
+    }
+
+    // the join is only rejected once the background scan counted the distinct authors
+    private BadRequestException awaitRejection(String query) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                check(query);
+            } catch (BadRequestException e) {
+                return e;
+            }
+            Thread.onSpinWait();
+        }
+        throw new AssertionError("Query was not rejected within " + TIMEOUT_MILLIS + " ms: " + query);
+    }
+
+}
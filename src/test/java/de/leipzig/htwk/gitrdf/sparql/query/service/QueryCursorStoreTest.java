@@ -0,0 +1,105 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.BadRequestException;
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.NotFoundException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QueryCursorStoreTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    private Path spillDirectory;
+
+    private QueryCursorStore queryCursorStore;
+    private Model model;
+
+    @BeforeEach
+    void setUp() {
+        QueryProperties properties = new QueryProperties();
+        properties.getCursor().setSpillDirectory(spillDirectory);
+        properties.getCursor().setMaxSpillSize(DataSize.ofKilobytes(64));
+
+        queryCursorStore = new QueryCursorStore(properties, new SimpleMeterRegistry());
+
+        model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 10_000; i++) {
+            model.add(model.createResource("urn:test:commit:" + i), model.createProperty("urn:test:message"), "commit message " + i);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        queryCursorStore.shutdown();
+    }
+
+    @Test
+    void rejectsSpilledResultAboveMaxSpillSize() throws IOException {
+        Path spillFile = queryCursorStore.createSpillFile();
+
+        assertThatThrownBy(() -> {
+            try (QueryExecution queryExecution = QueryExecutionFactory.create("SELECT * WHERE { ?s ?p ?o }", model);
+                    OutputStream outputStream = new BufferedOutputStream(queryCursorStore.newSpillOutputStream(spillFile))) {
+                ResultFormat.THRIFT.writeSelectResult(outputStream, queryExecution.execSelect());
+            }
+        }).isInstanceOf(BadRequestException.class);
+
+        assertThat(Files.size(spillFile)).isLessThanOrEqualTo(DataSize.ofKilobytes(64).toBytes());
+    }
+
+    @Test
+    void closesLiveCursorOnceLayerOfItsViewIsRemoved() {
+        QueryCursor basic = openLiveCursor(1, QueryType.BASIC);
+        QueryCursor expert = openLiveCursor(1, QueryType.EXPERT);
+        QueryCursor otherOrder = openLiveCursor(2, QueryType.BASIC);
+
+        queryCursorStore.onStoreEntryRemoved(new StoreEntryRemovedEvent(1, ModelLayer.STATISTIC));
+
+        assertThat(queryCursorStore.get(basic.getId())).isEmpty();
+        assertThatThrownBy(() -> queryCursorStore.readPage(basic, TIMEOUT)).isInstanceOf(NotFoundException.class);
+        assertThat(queryCursorStore.get(expert.getId())).isPresent();
+        assertThat(queryCursorStore.get(otherOrder.getId())).isPresent();
+    }
+
+    @Test
+    void staleCursorIsClosedAfterItsPage() {
+        QueryCursor cursor = openLiveCursor(1, QueryType.BASIC);
+        cursor.markStale();
+
+        QueryCursor.Page page = queryCursorStore.readPage(cursor, TIMEOUT);
+
+        assertThat(page.bindings()).hasSize(10);
+        assertThat(page.hasMore()).isTrue();
+        assertThat(cursor.isClosed()).isTrue();
+        assertThat(queryCursorStore.get(cursor.getId())).isEmpty();
+    }
+
+    private QueryCursor openLiveCursor(long orderId, QueryType queryType) {
+        QueryCursor cursor = QueryCursor.live(orderId, queryType, 10,
+                QueryExecutionFactory.create("SELECT * WHERE { ?s ?p ?o }", model));
+        queryCursorStore.reserve().register(cursor);
+        return cursor;
+    }
+
+}
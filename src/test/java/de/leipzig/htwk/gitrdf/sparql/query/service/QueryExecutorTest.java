@@ -0,0 +1,171 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+
+class QueryExecutorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private QueryExecutor queryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        QueryProperties properties = new QueryProperties();
+        properties.getScheduler().setMaxConcurrent(2);
+        properties.getScheduler().setMaxStreaming(1);
+
+        queryExecutor = new QueryExecutor(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queryExecutor.shutdown();
+    }
+
+    @Test
+    void evaluatesOnPoolAndPipesResultToClient() throws IOException {
+        byte[] result = new byte[300_000];
+        new Random(42).nextBytes(result);
+        AtomicReference<String> evaluationThread = new AtomicReference<>();
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+
+        queryExecutor.stream(resultStream -> {
+            evaluationThread.set(Thread.currentThread().getName());
+            resultStream.write(result, 0, 1000);
+            resultStream.flush();
+            resultStream.write(result[1000]);
+            resultStream.write(result, 1001, result.length - 1001);
+        }, TIMEOUT, client);
+
+        assertThat(client.toByteArray()).isEqualTo(result);
+        assertThat(evaluationThread.get()).startsWith("sparql-query-");
+    }
+
+    @Test
+    void rethrowsFailureOfEvaluation() {
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> queryExecutor.stream(resultStream -> {
+            resultStream.write(new byte[10]);
+            throw new IllegalStateException("evaluation failed");
+        }, TIMEOUT, client)).isInstanceOf(IllegalStateException.class).hasMessage("evaluation failed");
+
+        assertThat(client.size()).isEqualTo(10);
+    }
+
+    @Test
+    void stopsEvaluationOnceClientIsGone() {
+        AtomicReference<IOException> evaluationFailure = new AtomicReference<>();
+        OutputStream goneClient = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("connection reset");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+
+        assertThatThrownBy(() -> queryExecutor.stream(resultStream -> {
+            try {
+                // an endless result
+                while (true) {
+                    resultStream.write(new byte[1024]);
+                }
+            } catch (IOException e) {
+                evaluationFailure.set(e);
+                throw e;
+            }
+        }, TIMEOUT, goneClient)).hasMessage("connection reset");
+
+        // returns only after the evaluation gave up
+        assertThat(evaluationFailure.get()).isNotNull();
+    }
+
+    @Test
+    void abortsEvaluationRunningLongerThanTimeout() {
+        Model model = commits(100);
+        // a cartesian product, counting it takes far longer than the timeout
+        String query = "SELECT (COUNT(*) AS ?count) WHERE { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i . ?j ?k ?l }";
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> queryExecutor.stream(resultStream -> {
+            try (QueryExecution queryExecution = QueryExecutionFactory.create(query, model)) {
+                QueryCancellation cancellation = QueryCancellation.current().orElseThrow();
+                cancellation.attach(queryExecution);
+                ResultSet resultSet = queryExecution.execSelect();
+                cancellation.started();
+                ResultFormat.CSV.writeSelectResult(resultStream, resultSet);
+            }
+        }, Duration.ofMillis(200), new ByteArrayOutputStream())).isInstanceOf(QueryCancelledException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(TIMEOUT);
+    }
+
+    @Test
+    void timeBlockedOnSlowClientDoesNotCount() throws IOException {
+        Model model = commits(20_000);
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+        OutputStream slowClient = new FilterOutputStream(client) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                out.write(b, off, len);
+            }
+        };
+        long start = System.nanoTime();
+
+        queryExecutor.stream(resultStream -> {
+            try (QueryExecution queryExecution = QueryExecutionFactory.create("SELECT * WHERE { ?s ?p ?o }", model)) {
+                QueryCancellation cancellation = QueryCancellation.current().orElseThrow();
+                cancellation.attach(queryExecution);
+                ResultSet resultSet = queryExecution.execSelect();
+                cancellation.started();
+                ResultFormat.CSV.writeSelectResult(resultStream, resultSet);
+            }
+        }, Duration.ofMillis(500), slowClient);
+
+        // the client took longer than the timeout to receive the whole result
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(500));
+        assertThat(client.toString(StandardCharsets.UTF_8).lines()).hasSize(20_001);
+    }
+
+    private static Model commits(int count) {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < count; i++) {
+            model.add(model.createResource("urn:test:repository:gitrdf:commit:" + i + ":" + "0".repeat(60)),
+                    model.createProperty("urn:test:message"), "commit message " + i);
+        }
+        return model;
+    }
+
+}
@@ -0,0 +1,133 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import de.leipzig.htwk.gitrdf.sparql.query.config.TripleStoreProperties;
+
+class QueryResultCacheTest {
+
+    private QueryResultCache queryResultCache;
+
+    @BeforeEach
+    void setUp() {
+        TripleStoreProperties properties = new TripleStoreProperties();
+        properties.getResultCache().setMaxSize(DataSize.ofBytes(30));
+        properties.getResultCache().setMaxEntrySize(DataSize.ofBytes(20));
+
+        queryResultCache = new QueryResultCache(properties);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedResultsBeyondMaxSize() {
+        QueryResultCache.Key first = key(1, "first");
+        QueryResultCache.Key second = key(1, "second");
+        QueryResultCache.Key third = key(1, "third");
+
+        queryResultCache.put(first, 0, new byte[10]);
+        queryResultCache.put(second, 0, new byte[10]);
+        // makes second the least recently used result
+        queryResultCache.get(first);
+        queryResultCache.put(third, 0, new byte[15]);
+
+        assertThat(queryResultCache.get(first)).isPresent();
+        assertThat(queryResultCache.get(second)).isEmpty();
+        assertThat(queryResultCache.get(third)).isPresent();
+    }
+
+    @Test
+    void skipsResultsAboveMaxEntrySize() {
+        QueryResultCache.Key key = key(1, "large");
+
+        queryResultCache.put(key, 0, new byte[21]);
+
+        assertThat(queryResultCache.get(key)).isEmpty();
+    }
+
+    @Test
+    void invalidatesResultsOfRemovedLayer() {
+        QueryResultCache.Key basic = new QueryResultCache.Key(1, QueryType.BASIC, "query", ResultFormat.JSON);
+        QueryResultCache.Key analysis = new QueryResultCache.Key(1, QueryType.ANALYSIS, "query", ResultFormat.JSON);
+        QueryResultCache.Key otherOrder = new QueryResultCache.Key(2, QueryType.BASIC, "query", ResultFormat.JSON);
+
+        queryResultCache.put(basic, 0, new byte[5]);
+        queryResultCache.put(analysis, 0, new byte[5]);
+        queryResultCache.put(otherOrder, 0, new byte[5]);
+
+        queryResultCache.onStoreEntryRemoved(new StoreEntryRemovedEvent(1, ModelLayer.BASE));
+
+        assertThat(queryResultCache.get(basic)).isEmpty();
+        assertThat(queryResultCache.get(analysis)).isPresent();
+        assertThat(queryResultCache.get(otherOrder)).isPresent();
+    }
+
+    @Test
+    void dropsResultsComputedBeforeAnInvalidation() {
+        QueryResultCache.Key key = key(1, "query");
+
+        long generation = queryResultCache.getGeneration(1);
+        queryResultCache.onStoreEntryRemoved(new StoreEntryRemovedEvent(1, ModelLayer.BASE));
+        queryResultCache.put(key, generation, new byte[5]);
+
+        assertThat(queryResultCache.get(key)).isEmpty();
+
+        queryResultCache.put(key, queryResultCache.getGeneration(1), new byte[5]);
+
+        assertThat(queryResultCache.get(key)).isPresent();
+    }
+
+    @Test
+    void invalidationOfOtherOrderKeepsGeneration() {
+        long generation = queryResultCache.getGeneration(1);
+
+        queryResultCache.onStoreEntryRemoved(new StoreEntryRemovedEvent(2, ModelLayer.BASE));
+
+        assertThat(queryResultCache.getGeneration(1)).isEqualTo(generation);
+    }
+
+    @Test
+    void prunedGenerationsStillDropStaleResults() {
+        QueryResultCache.Key key = key(1, "query");
+
+        long generation = queryResultCache.getGeneration(1);
+        queryResultCache.onStoreEntryRemoved(new StoreEntryRemovedEvent(1, ModelLayer.BASE));
+        // far more invalidated orders than generations are kept
+        for (long orderId = 2; orderId < 5000; orderId++) {
+            queryResultCache.onStoreEntryRemoved(new StoreEntryRemovedEvent(orderId, ModelLayer.BASE));
+        }
+        queryResultCache.put(key, generation, new byte[5]);
+
+        assertThat(queryResultCache.get(key)).isEmpty();
+
+        queryResultCache.put(key, queryResultCache.getGeneration(1), new byte[5]);
+
+        assertThat(queryResultCache.get(key)).isPresent();
+    }
+
+    @Test
+    void capturesOnlyResultsBelowMaxEntrySize() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        QueryResultCache.CapturingOutputStream small = queryResultCache.capture(target);
+        small.write(new byte[20]);
+
+        QueryResultCache.CapturingOutputStream large = queryResultCache.capture(target);
+        large.write(new byte[15]);
+        large.write(new byte[15]);
+
+        assertThat(small.getCaptured()).hasValueSatisfying(captured -> assertThat(captured).hasSize(20));
+        assertThat(large.getCaptured()).isEmpty();
+        assertThat(target.size()).isEqualTo(50);
+    }
+
+    private static QueryResultCache.Key key(long orderId, String query) {
+        return new QueryResultCache.Key(orderId, QueryType.BASIC, query, ResultFormat.JSON);
+    }
+
+}
@@ -0,0 +1,257 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.leipzig.htwk.gitrdf.sparql.query.api.exception.TooManyRequestsException;
+import de.leipzig.htwk.gitrdf.sparql.query.config.QueryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QuerySchedulerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final BlockingQueue<Admission> admissions = new LinkedBlockingQueue<>();
+
+    private QueryProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    private record Admission(String name, QueryScheduler.Permit permit) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new QueryProperties();
+        properties.getScheduler().setMaxConcurrent(1);
+        properties.getScheduler().setMaxConcurrentPerOrder(1);
+        properties.getScheduler().setMaxQueued(10);
+        properties.getScheduler().setMaxQueueWait(Duration.ofSeconds(30));
+        properties.getScheduler().setRetryAfter(Duration.ofSeconds(7));
+
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void capsConcurrentQueries() throws Exception {
+        properties.getScheduler().setMaxConcurrent(2);
+        properties.getScheduler().setMaxConcurrentPerOrder(2);
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit first = queryScheduler.acquire(1);
+        queryScheduler.acquire(2);
+        acquireInBackground(queryScheduler, 3, "third");
+
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(2);
+        assertThat(admissions).isEmpty();
+
+        first.close();
+
+        assertThat(nextAdmission().name()).isEqualTo("third");
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(2);
+        assertThat(queryScheduler.getQueuedCount()).isZero();
+    }
+
+    @Test
+    void capsConcurrentQueriesPerOrder() throws Exception {
+        properties.getScheduler().setMaxConcurrent(4);
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit first = queryScheduler.acquire(1);
+        acquireInBackground(queryScheduler, 1, "second of order 1");
+
+        // other orders pass the queued query of order 1
+        queryScheduler.acquire(2);
+
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(2);
+        assertThat(queryScheduler.getQueuedCount()).isEqualTo(1);
+
+        first.close();
+
+        assertThat(nextAdmission().name()).isEqualTo("second of order 1");
+    }
+
+    @Test
+    void admitsOrdersRoundRobin() throws Exception {
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit running = queryScheduler.acquire(1);
+        acquireInBackground(queryScheduler, 1, "order 1, first");
+        acquireInBackground(queryScheduler, 1, "order 1, second");
+        acquireInBackground(queryScheduler, 2, "order 2, first");
+
+        running.close();
+        Admission first = nextAdmission();
+        first.permit().close();
+        Admission second = nextAdmission();
+        second.permit().close();
+        Admission third = nextAdmission();
+
+        assertThat(first.name()).isEqualTo("order 1, first");
+        assertThat(second.name()).isEqualTo("order 2, first");
+        assertThat(third.name()).isEqualTo("order 1, second");
+    }
+
+    @Test
+    void rejectsQueriesBeyondQueueWithRetryAfter() throws Exception {
+        properties.getScheduler().setMaxQueued(1);
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        queryScheduler.acquire(1);
+        acquireInBackground(queryScheduler, 2, "queued");
+
+        assertThatThrownBy(() -> queryScheduler.acquire(3))
+                .isInstanceOfSatisfying(TooManyRequestsException.class,
+                        e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(7)));
+        assertThat(meterRegistry.counter("sparql.query.rejected", "cause", "queue-full").count()).isEqualTo(1);
+        assertThat(queryScheduler.getQueuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsQueriesWaitingLongerThanMaxQueueWait() throws Exception {
+        properties.getScheduler().setMaxQueueWait(Duration.ofMillis(50));
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit running = queryScheduler.acquire(1);
+
+        assertThatThrownBy(() -> queryScheduler.acquire(2))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(meterRegistry.counter("sparql.query.rejected", "cause", "queue-timeout").count()).isEqualTo(1);
+        assertThat(queryScheduler.getQueuedCount()).isZero();
+
+        // the abandoned waiter doesn't hold on to a slot
+        running.close();
+        queryScheduler.acquire(2);
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(1);
+    }
+
+    @Test
+    void closingPermitTwiceReleasesOnce() throws Exception {
+        properties.getScheduler().setMaxConcurrent(2);
+        properties.getScheduler().setMaxConcurrentPerOrder(2);
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit first = queryScheduler.acquire(1);
+        queryScheduler.acquire(1);
+
+        first.close();
+        first.close();
+
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(1);
+    }
+
+    @Test
+    void slowClientHandsExecutionSlotOn() throws Exception {
+        properties.getScheduler().setSlowWriteThreshold(Duration.ofMillis(20));
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit permit = queryScheduler.acquire(1);
+        permit.watchClient(new ByteArrayOutputStream()).write(1);
+
+        assertThat(permit.isStreaming()).isFalse();
+
+        permit.watchClient(slowClient()).write(new byte[8], 0, 8);
+
+        assertThat(permit.isStreaming()).isTrue();
+        assertThat(queryScheduler.getRunningCount()).isZero();
+        assertThat(queryScheduler.getStreamingCount()).isEqualTo(1);
+
+        queryScheduler.acquire(1);
+        permit.close();
+
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(1);
+        assertThat(queryScheduler.getStreamingCount()).isZero();
+    }
+
+    @Test
+    void slowClientKeepsExecutionSlotWithoutStreamingSlot() throws Exception {
+        properties.getScheduler().setSlowWriteThreshold(Duration.ofMillis(20));
+        properties.getScheduler().setMaxStreaming(0);
+        QueryScheduler queryScheduler = new QueryScheduler(properties, meterRegistry);
+
+        QueryScheduler.Permit permit = queryScheduler.acquire(1);
+        permit.watchClient(slowClient()).flush();
+
+        assertThat(permit.isStreaming()).isFalse();
+        assertThat(queryScheduler.getRunningCount()).isEqualTo(1);
+
+        permit.close();
+
+        assertThat(queryScheduler.getRunningCount()).isZero();
+    }
+
+    private void acquireInBackground(QueryScheduler queryScheduler, long orderId, String name) {
+        int queuedBefore = queryScheduler.getQueuedCount();
+
+        executor.submit(() -> {
+            admissions.put(new Admission(name, queryScheduler.acquire(orderId)));
+            return null;
+        });
+
+        awaitCount(queryScheduler::getQueuedCount, queuedBefore + 1);
+    }
+
+    private Admission nextAdmission() throws InterruptedException {
+        Admission admission = admissions.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(admission).as("admitted query").isNotNull();
+        return admission;
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (count.getAsInt() != expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(count.getAsInt()).isEqualTo(expected);
+    }
+
+    private static OutputStream slowClient() {
+        return new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                block();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                block();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                block();
+            }
+
+            private void block() throws IOException {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,54 @@
+package de.leipzig.htwk.gitrdf.sparql.query.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ResultFormatTest {
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = { " ", "*/*", "application/json", "text/html, application/xhtml+xml" })
+    void defaultsWithoutAcceptedFormatOfResultKind(String acceptHeader) {
+        assertThat(ResultFormat.fromAcceptHeader(acceptHeader, false)).isEqualTo(ResultFormat.JSON);
+        assertThat(ResultFormat.fromAcceptHeader(acceptHeader, true)).isEqualTo(ResultFormat.TURTLE);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "application/sparql-results+json | JSON",
+            "application/sparql-results+xml | XML",
+            "text/csv | CSV",
+            "text/tab-separated-values | TSV",
+            "application/sparql-results+thrift | THRIFT",
+            "text/*, text/tab-separated-values | TSV",
+            "text/* | CSV",
+            "text/csv;q=0.5, application/sparql-results+xml | XML",
+            "application/sparql-results+xml;q=0.2, text/tab-separated-values;q=0.8 | TSV",
+            "text/csv;q=0, */*;q=0.1 | JSON",
+            "text/turtle, text/csv;q=0.1 | CSV",
+            "text/turtle | JSON",
+    })
+    void negotiatesSelectResultFormat(String acceptHeader, ResultFormat expected) {
+        assertThat(ResultFormat.fromAcceptHeader(acceptHeader, false)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "text/turtle | TURTLE",
+            "application/n-triples | N_TRIPLES",
+            "application/rdf+thrift | RDF_THRIFT",
+            "application/* | N_TRIPLES",
+            "text/turtle;q=0.5, application/rdf+thrift | RDF_THRIFT",
+            "application/sparql-results+json, application/n-triples;q=0.1 | N_TRIPLES",
+            "application/sparql-results+json | TURTLE",
+            "text/turtle;q=0 | TURTLE",
+    })
+    void negotiatesGraphResultFormat(String acceptHeader, ResultFormat expected) {
+        assertThat(ResultFormat.fromAcceptHeader(acceptHeader, true)).isEqualTo(expected);
+    }
+
+}